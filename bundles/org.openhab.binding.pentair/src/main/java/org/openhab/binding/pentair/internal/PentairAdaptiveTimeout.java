@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response timeout for a device on the Pentair bus, learned from observed round trip times. Keeps a smoothed round
+ * trip time and its mean deviation (as TCP does for its retransmission timer) and sets the timeout to the smoothed
+ * round trip time plus four deviations, bounded by a minimum and maximum.
+ *
+ * @author Jeff James - initial contribution
+ *
+ */
+public class PentairAdaptiveTimeout {
+    private final long min;
+    private final long max;
+
+    /** smoothed round trip time in ns, -1 until first sample */
+    private long srtt = -1;
+    /** smoothed mean deviation of round trip time in ns */
+    private long rttvar;
+    /** current timeout in ns */
+    private long timeout;
+    /** histogram to which observed round trip times are also recorded, null if none */
+    private volatile PentairLatencyHistogram histogram;
+
+    /**
+     * Constructor
+     *
+     * @param initial timeout in ms to use until round trip times have been observed
+     * @param min minimum timeout in ms
+     * @param max maximum timeout in ms
+     */
+    public PentairAdaptiveTimeout(long initial, long min, long max) {
+        this.min = TimeUnit.MILLISECONDS.toNanos(min);
+        this.max = TimeUnit.MILLISECONDS.toNanos(max);
+        this.timeout = TimeUnit.MILLISECONDS.toNanos(initial);
+    }
+
+    /**
+     * Adds an observed round trip time. Only times of requests that were not retried should be added, since the
+     * response to a retried request can not be matched to a specific attempt.
+     *
+     * @param rtt round trip time in ns
+     */
+    public synchronized void update(long rtt) {
+        PentairLatencyHistogram h = histogram;
+        if (h != null) {
+            h.record(rtt);
+        }
+
+        if (srtt < 0) {
+            srtt = rtt;
+            rttvar = rtt / 2;
+        } else {
+            rttvar = (3 * rttvar + Math.abs(srtt - rtt)) / 4;
+            srtt = (7 * srtt + rtt) / 8;
+        }
+
+        timeout = Math.max(min, Math.min(max, srtt + 4 * rttvar));
+    }
+
+    /**
+     * Sets histogram to which observed round trip times are also recorded, e.g. the bridge's ack latency
+     *
+     * @param histogram histogram, null for none
+     */
+    public void setHistogram(PentairLatencyHistogram histogram) {
+        this.histogram = histogram;
+    }
+
+    /**
+     * Doubles the timeout after a request timed out, up to the maximum
+     */
+    public synchronized void backoff() {
+        timeout = Math.min(max, timeout * 2);
+    }
+
+    /**
+     * Gets current timeout
+     *
+     * @return timeout in ms
+     */
+    public synchronized long getTimeout() {
+        return TimeUnit.NANOSECONDS.toMillis(timeout);
+    }
+
+    /**
+     * Gets smoothed round trip time
+     *
+     * @return round trip time in ms, -1 if no round trip time has been observed
+     */
+    public synchronized long getRoundTripTime() {
+        return (srtt < 0) ? -1 : TimeUnit.NANOSECONDS.toMillis(srtt);
+    }
+}
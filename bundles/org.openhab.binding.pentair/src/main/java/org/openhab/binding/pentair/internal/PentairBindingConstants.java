@@ -30,6 +30,7 @@ public class PentairBindingConstants {
     // List of Bridge Types
     public static final String IP_BRIDGE = "ip_bridge";
     public static final String SERIAL_BRIDGE = "serial_bridge";
+    public static final String REPLAY_BRIDGE = "replay_bridge";
 
     // List of all Device Types
     public static final String CONTROLLER = "controller";
@@ -39,12 +40,35 @@ public class PentairBindingConstants {
     // List of all Bridge Thing Type UIDs
     public static final ThingTypeUID IP_BRIDGE_THING_TYPE = new ThingTypeUID(BINDING_ID, IP_BRIDGE);
     public static final ThingTypeUID SERIAL_BRIDGE_THING_TYPE = new ThingTypeUID(BINDING_ID, SERIAL_BRIDGE);
+    public static final ThingTypeUID REPLAY_BRIDGE_THING_TYPE = new ThingTypeUID(BINDING_ID, REPLAY_BRIDGE);
 
     // List of all Thing Type UIDs
     public static final ThingTypeUID INTELLIFLO_THING_TYPE = new ThingTypeUID(BINDING_ID, INTELLIFLO);
     public static final ThingTypeUID CONTROLLER_THING_TYPE = new ThingTypeUID(BINDING_ID, CONTROLLER);
     public static final ThingTypeUID INTELLICHLOR_THING_TYPE = new ThingTypeUID(BINDING_ID, INTELLICHLOR);
 
+    // Bridge configuration parameters
+    public static final String CONFIG_CAPTUREFILE = "capturefile";
+    public static final String CONFIG_LISTENONLY = "listenonly";
+    public static final String CONFIG_SNOOPWINDOW = "snoopwindow";
+
+    // List of bridge channel ids
+    public static final String BRIDGE_DISPATCHDEPTH = "dispatchdepth";
+    public static final String BRIDGE_DISPATCHDROPPED = "dispatchdropped";
+    public static final String BRIDGE_DISPATCHCOALESCED = "dispatchcoalesced";
+    public static final String BRIDGE_BUSUTILIZATION = "busutilization";
+    public static final String BRIDGE_COLLISIONS = "collisions";
+    public static final String BRIDGE_BYTESREAD = "bytesread";
+    public static final String BRIDGE_FRAMESDECODED = "framesdecoded";
+    public static final String BRIDGE_CHECKSUMERRORS = "checksumerrors";
+    public static final String BRIDGE_RESYNCS = "resyncs";
+    public static final String BRIDGE_UNREGISTEREDFRAMES = "unregisteredframes";
+    public static final String BRIDGE_FRAMESWRITTEN = "frameswritten";
+    public static final String BRIDGE_WRITEERRORS = "writeerrors";
+    public static final String BRIDGE_RECONNECTS = "reconnects";
+    public static final String BRIDGE_DISPATCHLATENCY = "dispatchlatency";
+    public static final String BRIDGE_ACKLATENCY = "acklatency";
+
     // Controller Groups and Items
 
     public static final String CONTROLLER_STATUS = "status";
@@ -116,6 +140,10 @@ public class PentairBindingConstants {
 
     // Set of all supported Thing Type UIDs
     public static final Set<ThingTypeUID> SUPPORTED_THING_TYPES_UIDS = Collections
-            .unmodifiableSet(Stream.of(IP_BRIDGE_THING_TYPE, SERIAL_BRIDGE_THING_TYPE, CONTROLLER_THING_TYPE,
-                    INTELLIFLO_THING_TYPE, INTELLICHLOR_THING_TYPE).collect(Collectors.toSet()));
+            .unmodifiableSet(Stream.of(IP_BRIDGE_THING_TYPE, SERIAL_BRIDGE_THING_TYPE, REPLAY_BRIDGE_THING_TYPE,
+                    CONTROLLER_THING_TYPE, INTELLIFLO_THING_TYPE, INTELLICHLOR_THING_TYPE).collect(Collectors.toSet()));
+
+    // Set of Thing Type UIDs discovered from the traffic on the bus
+    public static final Set<ThingTypeUID> DISCOVERABLE_THING_TYPES_UIDS = Collections.unmodifiableSet(Stream
+            .of(CONTROLLER_THING_TYPE, INTELLIFLO_THING_TYPE, INTELLICHLOR_THING_TYPE).collect(Collectors.toSet()));
 }
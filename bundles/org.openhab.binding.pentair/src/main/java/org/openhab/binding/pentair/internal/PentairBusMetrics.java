@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Counters and latency histograms of a bridge, to tell a noisy bus from a slow handler. Counters are updated from the
+ * parser, dispatch and writer threads without locking and without allocating, except for the first frame seen from a
+ * new source.
+ *
+ * @author Jeff James - initial contribution
+ *
+ */
+public class PentairBusMetrics {
+    private final AtomicLong bytesread = new AtomicLong();
+    private final AtomicLong frames = new AtomicLong();
+    private final AtomicLong intellichlorframes = new AtomicLong();
+    private final AtomicLong checksumerrors = new AtomicLong();
+    private final AtomicLong resyncs = new AtomicLong();
+    private final AtomicLong unregisteredframes = new AtomicLong();
+    private final AtomicLong frameswritten = new AtomicLong();
+    private final AtomicLong writeerrors = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    /** frames decoded by source, each indexed by action, created when the first frame from a source is seen */
+    private final AtomicReferenceArray<AtomicLongArray> framesbysource = new AtomicReferenceArray<>(256);
+
+    /** time from the start of a received frame until its handler has processed it */
+    private final PentairLatencyHistogram dispatchlatency = new PentairLatencyHistogram();
+    /** time from writing a command until the response of the device has been received */
+    private final PentairLatencyHistogram acklatency = new PentairLatencyHistogram();
+
+    public void onBytesRead(int n) {
+        bytesread.addAndGet(n);
+    }
+
+    /**
+     * Called for every Pentair frame decoded with a valid checksum
+     *
+     * @param source source address of the frame
+     * @param action action of the frame
+     */
+    public void onFrame(int source, int action) {
+        AtomicLongArray byaction = framesbysource.get(source & 0xFF);
+
+        if (byaction == null) {
+            framesbysource.compareAndSet(source & 0xFF, null, new AtomicLongArray(256));
+            byaction = framesbysource.get(source & 0xFF);
+        }
+
+        byaction.incrementAndGet(action & 0xFF);
+        frames.incrementAndGet();
+    }
+
+    public void onIntellichlorFrame() {
+        intellichlorframes.incrementAndGet();
+    }
+
+    public void onChecksumError() {
+        checksumerrors.incrementAndGet();
+    }
+
+    public void onResync() {
+        resyncs.incrementAndGet();
+    }
+
+    public void onUnregistered() {
+        unregisteredframes.incrementAndGet();
+    }
+
+    public void onWrite() {
+        frameswritten.incrementAndGet();
+    }
+
+    public void onWriteError() {
+        writeerrors.incrementAndGet();
+    }
+
+    public void onReconnect() {
+        reconnects.incrementAndGet();
+    }
+
+    public long getBytesRead() {
+        return bytesread.get();
+    }
+
+    /**
+     * Gets number of frames decoded with a valid checksum, Pentair and Intellichlor
+     *
+     * @return number of frames
+     */
+    public long getFramesDecoded() {
+        return frames.get() + intellichlorframes.get();
+    }
+
+    /**
+     * Gets number of Pentair frames decoded from a source with an action
+     *
+     * @param source source address
+     * @param action action
+     * @return number of frames
+     */
+    public long getFrames(int source, int action) {
+        AtomicLongArray byaction = framesbysource.get(source & 0xFF);
+
+        return (byaction == null) ? 0 : byaction.get(action & 0xFF);
+    }
+
+    /**
+     * Gets number of Pentair frames decoded from a source, with any action
+     *
+     * @param source source address
+     * @return number of frames
+     */
+    public long getFramesFrom(int source) {
+        AtomicLongArray byaction = framesbysource.get(source & 0xFF);
+        long n = 0;
+
+        if (byaction != null) {
+            for (int action = 0; action < 256; action++) {
+                n += byaction.get(action);
+            }
+        }
+
+        return n;
+    }
+
+    public long getIntellichlorFrames() {
+        return intellichlorframes.get();
+    }
+
+    public long getChecksumErrors() {
+        return checksumerrors.get();
+    }
+
+    public long getResyncs() {
+        return resyncs.get();
+    }
+
+    public long getUnregisteredFrames() {
+        return unregisteredframes.get();
+    }
+
+    public long getFramesWritten() {
+        return frameswritten.get();
+    }
+
+    public long getWriteErrors() {
+        return writeerrors.get();
+    }
+
+    public long getReconnects() {
+        return reconnects.get();
+    }
+
+    public PentairLatencyHistogram getDispatchLatency() {
+        return dispatchlatency;
+    }
+
+    public PentairLatencyHistogram getAckLatency() {
+        return acklatency;
+    }
+
+    /**
+     * Renders all metrics as Thing properties. Frames by source and action are listed as "frames.SS.AA", with the
+     * source and action in hex.
+     *
+     * @return properties, sorted by name
+     */
+    public Map<String, String> toProperties() {
+        Map<String, String> properties = new TreeMap<>();
+
+        properties.put("bytesRead", Long.toString(getBytesRead()));
+        properties.put("framesDecoded", Long.toString(getFramesDecoded()));
+        properties.put("intellichlorFrames", Long.toString(getIntellichlorFrames()));
+        properties.put("checksumErrors", Long.toString(getChecksumErrors()));
+        properties.put("resyncs", Long.toString(getResyncs()));
+        properties.put("unregisteredFrames", Long.toString(getUnregisteredFrames()));
+        properties.put("framesWritten", Long.toString(getFramesWritten()));
+        properties.put("writeErrors", Long.toString(getWriteErrors()));
+        properties.put("reconnects", Long.toString(getReconnects()));
+        properties.put("dispatchLatency", dispatchlatency.summary());
+        properties.put("ackLatency", acklatency.summary());
+
+        for (int source = 0; source < 256; source++) {
+            AtomicLongArray byaction = framesbysource.get(source);
+
+            if (byaction == null) {
+                continue;
+            }
+
+            for (int action = 0; action < 256; action++) {
+                long n = byaction.get(action);
+
+                if (n != 0) {
+                    properties.put(String.format("frames.%02X.%02X", source, action), Long.toString(n));
+                }
+            }
+        }
+
+        return properties;
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks activity on the half duplex RS-485 bus so writes can be timed into idle gaps. It records when bytes were last
+ * received, learns the period of the controller's status broadcast and estimates how much of the time the bus is busy.
+ * Checksum errors shortly after one of our own writes are counted as likely collisions.
+ *
+ * All times are {@link System#nanoTime()} values. Receive times are the times at which a chunk of bytes was read, so
+ * with bridges that deliver bytes in bulk (e.g. over TCP) they are an approximation.
+ *
+ * @author Jeff James - initial contribution
+ *
+ */
+public class PentairBusMonitor {
+    /** time to transfer a byte at 9600 baud, 8N1 */
+    public static final long BYTE_TIME = TimeUnit.SECONDS.toNanos(10) / 9600;
+    /** time the bus has to be quiet before we start to transmit */
+    public static final long MIN_IDLE = TimeUnit.MILLISECONDS.toNanos(5);
+    /** margin kept around a predicted broadcast */
+    public static final long GUARD = TimeUnit.MILLISECONDS.toNanos(10);
+    /** checksum errors within this time after one of our writes are counted as collisions */
+    public static final long COLLISION_WINDOW = TimeUnit.MILLISECONDS.toNanos(50);
+    /** a controller is considered gone once no status broadcast has been seen for this long */
+    public static final long CONTROLLER_TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+    /** broadcasts further apart than this are not used to learn the period */
+    private static final long MAX_PERIOD = TimeUnit.SECONDS.toNanos(10);
+
+    private static final int BROADCAST_DEST = 0x0F;
+    private static final int STATUS_ACTION = 0x02;
+
+    /** time bytes were last received */
+    private long lastrx;
+    /** time our last write has been transmitted */
+    private long lasttx;
+    /** time of the last status broadcast, 0 if none seen yet */
+    private long lastbroadcast;
+    /** duration of the last status broadcast */
+    private long broadcasttime;
+    /** smoothed period of the status broadcast, 0 if not yet learned */
+    private long period;
+
+    private long bytes;
+    private long collisions;
+    private long samplebytes;
+    private long sampletime;
+
+    /**
+     * Called when bytes have been received
+     *
+     * @param now time bytes were read
+     * @param n number of bytes
+     */
+    public synchronized void onReceive(long now, int n) {
+        lastrx = now;
+        bytes += n;
+    }
+
+    /**
+     * Called for every decoded Pentair frame, used to learn the broadcast period of the controller
+     *
+     * @param start time the frame started
+     * @param p decoded packet
+     */
+    public synchronized void onFrame(long start, PentairPacket p) {
+        if ((p.getDest() & 0xFF) != BROADCAST_DEST || (p.getAction() & 0xFF) != STATUS_ACTION) {
+            return;
+        }
+
+        if (lastbroadcast != 0) {
+            long interval = start - lastbroadcast;
+
+            if (interval > 0 && interval < MAX_PERIOD) {
+                period = (period == 0) ? interval : (7 * period + interval) / 8;
+            }
+        }
+
+        lastbroadcast = start;
+        broadcasttime = (p.getPacketLength() + 5) * BYTE_TIME; // with preamble and checksum
+    }
+
+    /**
+     * Called for every frame with a checksum error
+     *
+     * @param now time the error was detected
+     */
+    public synchronized void onChecksumError(long now) {
+        if (now - lasttx < COLLISION_WINDOW) {
+            collisions++;
+        }
+    }
+
+    /**
+     * Called once we have written bytes to the bus
+     *
+     * @param now time the write completed
+     * @param n number of bytes written
+     */
+    public synchronized void onTransmit(long now, int n) {
+        lasttx = now;
+        bytes += n;
+    }
+
+    /**
+     * Gets time to wait before writing a frame, so the frame neither starts while the bus is busy nor overlaps with the
+     * predicted next status broadcast of the controller. Once the controller has stopped broadcasting, only the bus
+     * being busy delays a write.
+     *
+     * @param now current time
+     * @param n number of bytes to write
+     * @return time to wait in ns, 0 or less to write immediately
+     */
+    public synchronized long getTransmitDelay(long now, int n) {
+        long quiet = lastrx + MIN_IDLE - now;
+
+        if (quiet > 0) {
+            return quiet;
+        }
+
+        // broadcasts are only predicted while the controller is still sending them
+        if (period == 0 || !isControllerActive(now)) {
+            return 0;
+        }
+
+        // first predicted broadcast which has not ended yet
+        long next = lastbroadcast + period;
+        long late = now - broadcasttime - next;
+        if (late > 0) {
+            next += (late + period - 1) / period * period;
+        }
+
+        long end = now + n * BYTE_TIME;
+        if (end + GUARD > next && now < next + broadcasttime + GUARD) {
+            return next + broadcasttime + GUARD - now;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Gets bus utilization since the previous call
+     *
+     * @param now current time
+     * @return percentage of time bytes were transferred on the bus
+     */
+    public synchronized int sampleUtilization(long now) {
+        long elapsed = now - sampletime;
+        long transferred = bytes - samplebytes;
+
+        samplebytes = bytes;
+        sampletime = now;
+
+        if (elapsed <= 0) {
+            return 0;
+        }
+
+        return (int) Math.min(100, transferred * BYTE_TIME * 100 / elapsed);
+    }
+
+    /**
+     * Gets learned period of the controller status broadcast
+     *
+     * @return period in ms, 0 if not yet learned
+     */
+    public synchronized long getBroadcastPeriod() {
+        return TimeUnit.NANOSECONDS.toMillis(period);
+    }
+
+    /**
+     * Indicates whether a controller is active on the bus, i.e. its status broadcast has been seen recently
+     *
+     * @param now current time
+     * @return true if a status broadcast has been seen within {@link #CONTROLLER_TIMEOUT}
+     */
+    public synchronized boolean isControllerActive(long now) {
+        return lastbroadcast != 0 && now - lastbroadcast < CONTROLLER_TIMEOUT;
+    }
+
+    /**
+     * Gets estimated number of collisions
+     *
+     * @return number of checksum errors shortly after one of our writes
+     */
+    public synchronized long getCollisions() {
+        return collisions;
+    }
+}
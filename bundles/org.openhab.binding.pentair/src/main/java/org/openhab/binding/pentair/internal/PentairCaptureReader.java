@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import static org.openhab.binding.pentair.internal.PentairCaptureWriter.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the chunks of a capture file written by {@link PentairCaptureWriter}, in order.
+ *
+ * @author Jeff James - initial contribution
+ *
+ */
+public class PentairCaptureReader implements Closeable {
+    private final FileChannel channel;
+    private final MappedByteBuffer data;
+
+    /**
+     * Opens a capture file
+     *
+     * @param path file to read
+     * @throws IOException if the file can not be read or is not a capture file
+     */
+    public PentairCaptureReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a capture file: " + path);
+            }
+
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getShort() != VERSION) {
+                throw new IOException("Not a capture file or unsupported version: " + path);
+            }
+
+            long end = header.getLong(END_OFFSET);
+            if (end < HEADER_SIZE || end > channel.size() || end > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt capture file: " + path);
+            }
+
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+            data.position(HEADER_SIZE);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Indicates whether more chunks are available
+     *
+     * @return true if {@link #read} will return another chunk
+     */
+    public boolean hasNext() {
+        return data.remaining() >= RECORD_HEADER_SIZE;
+    }
+
+    /**
+     * Gets timestamp of the next chunk
+     *
+     * @return time in ns since the start of the capture
+     */
+    public long peekTimestamp() {
+        return data.getLong(data.position());
+    }
+
+    /**
+     * Reads the next chunk
+     *
+     * @param dst buffer to copy the bytes of the chunk to, must have room for the whole chunk
+     * @return number of bytes copied, -1 if there are no more chunks
+     */
+    public int read(ByteBuffer dst) {
+        if (!hasNext()) {
+            return -1;
+        }
+
+        data.getLong();
+        int len = data.getShort() & 0xFFFF;
+
+        if (len > dst.remaining() || len > data.remaining()) {
+            throw new IllegalStateException("Capture chunk of " + len + " bytes does not fit");
+        }
+
+        int limit = data.limit();
+        data.limit(data.position() + len);
+        dst.put(data);
+        data.limit(limit);
+
+        return len;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
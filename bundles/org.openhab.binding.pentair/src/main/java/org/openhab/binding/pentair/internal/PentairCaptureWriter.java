@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends raw bytes received from the Pentair bus to a capture file, so the traffic can later be fed back through the
+ * decoder with a {@link PentairCaptureReader}. The file is written through a memory mapping, extended a segment at a
+ * time, so appending a chunk is a memory copy.
+ *
+ * File format, all values big endian:
+ *
+ * Header: [magic int "PNTR"] [version short] [reserved short] [end of data offset long]
+ * Record: [ns since start of capture long] [length unsigned short] [bytes]
+ *
+ * The end of data offset is updated after each record. Any bytes after it are unused space of the last segment, which
+ * is cut off when the writer is closed.
+ *
+ * An existing capture file is appended to, so restarting the bridge does not lose earlier captures. The timestamps of
+ * the appended records continue from the last record in the file, i.e. the time the bridge was not capturing is left
+ * out when replaying.
+ *
+ * @author Jeff James - initial contribution
+ *
+ */
+public class PentairCaptureWriter implements Closeable {
+    public static final int MAGIC = 0x504E5452; // "PNTR"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int END_OFFSET = 8;
+    public static final int RECORD_HEADER_SIZE = 10;
+
+    /** size by which the file is extended when the current mapping is full */
+    private static final int SEGMENT_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private MappedByteBuffer segment;
+    /** capture start, timestamps are stored relative to this */
+    private final long start;
+    /** offset of end of data */
+    private long end;
+
+    /**
+     * Opens a capture file, creating it if it does not exist. Records are appended after the last complete record of an
+     * existing capture.
+     *
+     * @param path file to write
+     * @throws IOException if the file can not be written or exists and is not a capture file
+     */
+    public PentairCaptureWriter(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long last = 0;
+        try {
+            if (channel.size() == 0) {
+                header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+                header.putInt(MAGIC);
+                header.putShort(VERSION);
+                header.putShort((short) 0);
+
+                end = HEADER_SIZE;
+            } else {
+                end = checkHeader(path);
+                header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+                last = findLastRecord();
+            }
+            header.putLong(END_OFFSET, end);
+
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, end, SEGMENT_SIZE);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        start = System.nanoTime() - last;
+    }
+
+    /**
+     * Checks the header of an existing file without modifying it
+     *
+     * @param path file, for error messages
+     * @return end of data offset
+     * @throws IOException if the file is not a capture file
+     */
+    private long checkHeader(Path path) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            throw new IOException("Not a capture file: " + path);
+        }
+
+        MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        if (buf.getInt() != MAGIC || buf.getShort() != VERSION) {
+            throw new IOException("Not a capture file or unsupported version: " + path);
+        }
+
+        long offset = buf.getLong(END_OFFSET);
+        if (offset < HEADER_SIZE || offset > channel.size() || offset > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt capture file: " + path);
+        }
+
+        return offset;
+    }
+
+    /**
+     * Walks the records of an existing capture, moving the end of data offset back to the end of the last complete
+     * record
+     *
+     * @return timestamp of the last record, 0 if there is none
+     * @throws IOException
+     */
+    private long findLastRecord() throws IOException {
+        MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+        long last = 0;
+        int pos = HEADER_SIZE;
+
+        while (pos + RECORD_HEADER_SIZE <= end) {
+            int next = pos + RECORD_HEADER_SIZE + (data.getShort(pos + 8) & 0xFFFF);
+            if (next > end) {
+                break;
+            }
+
+            last = data.getLong(pos);
+            pos = next;
+        }
+
+        end = pos;
+        return last;
+    }
+
+    /**
+     * Appends a chunk of received bytes
+     *
+     * @param timestamp time the bytes were received, in {@link System#nanoTime()} units
+     * @param bytes array containing the bytes
+     * @param offset index of first byte
+     * @param len number of bytes, at most 65535
+     * @throws IOException
+     */
+    public synchronized void write(long timestamp, byte[] bytes, int offset, int len) throws IOException {
+        if (len > 0xFFFF) {
+            throw new IllegalArgumentException("chunk too large: " + len);
+        }
+
+        if (segment.remaining() < RECORD_HEADER_SIZE + len) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, end, SEGMENT_SIZE);
+        }
+
+        segment.putLong(timestamp - start);
+        segment.putShort((short) len);
+        segment.put(bytes, offset, len);
+
+        end += RECORD_HEADER_SIZE + len;
+        header.putLong(END_OFFSET, end);
+    }
+
+    /**
+     * Gets number of bytes written, including header
+     *
+     * @return size of captured data
+     */
+    public synchronized long size() {
+        return end;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            segment.force();
+            header.force();
+            channel.truncate(end);
+        } finally {
+            channel.close();
+        }
+    }
+}
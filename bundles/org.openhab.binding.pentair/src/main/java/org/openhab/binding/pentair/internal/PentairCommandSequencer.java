@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends a sequence of commands to a single device without blocking the calling thread. Each command is written once the
+ * device has acknowledged the previous one. A device acknowledges a command by responding with the same action, e.g. an
+ * Intelliflo pump answers a set remote control (4) command with a 4 response. If no acknowledgement arrives within the
+ * {@link PentairAdaptiveTimeout}, the command is retried and the sequence is aborted once the retries are used up. The
+ * timeout starts once the command has actually been written, as the bridge may hold it back for an idle gap on the bus.
+ *
+ * Only one sequence runs at a time; starting a new sequence abandons the one in progress, so the most recent command
+ * from the user wins.
+ *
+ * @author Jeff James - initial contribution
+ *
+ */
+public class PentairCommandSequencer {
+    private final Logger logger = LoggerFactory.getLogger(PentairCommandSequencer.class);
+
+    /** number of times a command is retried before the sequence is aborted */
+    public static final int MAX_RETRIES = 2;
+
+    private final ScheduledExecutorService scheduler;
+    private final BiConsumer<byte[], Runnable> writer;
+    private final PentairAdaptiveTimeout timeout;
+
+    private byte[][] steps;
+    private int step;
+    private int retries;
+    /** time the current command was written, 0 while it is still queued */
+    private long sent;
+    /** incremented whenever the current command changes, so stale timeouts can be ignored */
+    private int generation;
+    private ScheduledFuture<?> timeoutjob;
+
+    /**
+     * Constructor
+     *
+     * @param scheduler scheduler used for timeouts
+     * @param writer queues a command (without preamble and checksum) for writing to the bus, calling the callback
+     *            once the command has been written or dropped
+     * @param timeout response timeout of the device
+     */
+    public PentairCommandSequencer(ScheduledExecutorService scheduler, BiConsumer<byte[], Runnable> writer,
+            PentairAdaptiveTimeout timeout) {
+        this.scheduler = scheduler;
+        this.writer = writer;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Starts a sequence of commands, abandoning any sequence in progress
+     *
+     * @param commands commands to send in order, each starting with A5 and without checksum
+     */
+    public synchronized void start(byte[]... commands) {
+        if (steps != null) {
+            logger.debug("Abandoning command sequence at step {} of {}", step + 1, steps.length);
+        }
+
+        cancelTimeout();
+        steps = commands;
+        step = 0;
+
+        send();
+    }
+
+    /**
+     * Indicates whether a sequence is in progress
+     *
+     * @return true if waiting for an acknowledgement
+     */
+    public synchronized boolean isBusy() {
+        return steps != null;
+    }
+
+    /**
+     * Stops the sequence in progress
+     */
+    public synchronized void cancel() {
+        cancelTimeout();
+        steps = null;
+    }
+
+    /**
+     * Called for every packet received from the device. Advances the sequence if the packet acknowledges the current
+     * command.
+     *
+     * @param action action of the received packet
+     */
+    public synchronized void onResponse(int action) {
+        if (steps == null || action != (steps[step][PentairPacket.ACTION] & 0xFF)) {
+            return;
+        }
+
+        if (retries == 0 && sent != 0) {
+            timeout.update(System.nanoTime() - sent);
+        }
+
+        cancelTimeout();
+        step++;
+
+        if (step == steps.length) {
+            steps = null;
+            return;
+        }
+
+        send();
+    }
+
+    private void send() {
+        retries = 0;
+        write();
+    }
+
+    private void write() {
+        byte[] command = steps[step];
+        int gen = ++generation;
+
+        sent = 0;
+        writer.accept(command, () -> onWritten(gen));
+    }
+
+    /**
+     * Starts the response timeout once the command has left the write queue
+     */
+    private synchronized void onWritten(int gen) {
+        if (gen != generation || steps == null) {
+            return;
+        }
+
+        sent = System.nanoTime();
+        timeoutjob = scheduler.schedule(() -> onTimeout(gen), timeout.getTimeout(), TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void onTimeout(int gen) {
+        if (gen != generation || steps == null) {
+            return;
+        }
+
+        timeout.backoff();
+
+        if (retries == MAX_RETRIES) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("No response to command {}, aborting sequence", PentairPacket.bytesToHex(steps[step]));
+            }
+            steps = null;
+            return;
+        }
+
+        retries++;
+        if (logger.isDebugEnabled()) {
+            logger.debug("No response to command {}, retry {}", PentairPacket.bytesToHex(steps[step]), retries);
+        }
+        write();
+    }
+
+    private void cancelTimeout() {
+        generation++;
+
+        if (timeoutjob != null) {
+            timeoutjob.cancel(false);
+            timeoutjob = null;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+/**
+ * Bounded ring of decoded packets between the single producer (the decoder on the reader thread) and a dedicated
+ * dispatch thread which hands the packets to the Thing handlers. Slow handlers therefore no longer stall reading of the
+ * bus.
+ *
+ * The producer never blocks. When the ring is full, a queued packet with the same (dest, source, action) is replaced by
+ * the newer packet, so stale status frames are coalesced. Replies made of several records (e.g. one frame per schedule
+ * or circuit name) are only coalesced with a packet of the same record. If there is no such packet, the oldest queued
+ * packet is dropped.
+ * Packets displaced either way are returned to the producer so they can be released to their pool.
+ *
+ * @author Jeff James - initial contribution
+ *
+ */
+public class PentairDispatchRing {
+    /** actions of replies sent as one frame per record, numbered by the first data byte */
+    private static final int CUSTOM_NAMES = 10;
+    private static final int CIRCUIT_NAMES = 11;
+    private static final int SCHEDULE = 17;
+
+    private final PentairPacket[] slots;
+    private final long[] keys;
+
+    /** index of oldest packet in ring */
+    private int head;
+    /** number of packets in ring */
+    private int count;
+
+    private volatile long dropped;
+    private volatile long coalesced;
+
+    /**
+     * Constructor
+     *
+     * @param capacity maximum number of packets queued
+     */
+    public PentairDispatchRing(int capacity) {
+        slots = new PentairPacket[capacity];
+        keys = new long[capacity];
+    }
+
+    /**
+     * Gets key used for coalescing, built from destination, source and action for Pentair packets, plus the record
+     * number for replies made of several records, and from the command for Intellichlor packets.
+     *
+     * @param p packet
+     * @return key
+     */
+    private static long key(PentairPacket p) {
+        if (p instanceof PentairPacketIntellichlor) {
+            return (1L << 40) | (((PentairPacketIntellichlor) p).getCmd() & 0xFF);
+        }
+
+        int action = p.getAction() & 0xFF;
+        long key = ((p.getDest() & 0xFF) << 16) | ((p.getSource() & 0xFF) << 8) | action;
+
+        if ((action == CUSTOM_NAMES || action == CIRCUIT_NAMES || action == SCHEDULE) && p.getLength() > 0) {
+            key |= (long) (1 + (p.getByte(PentairPacket.STARTOFDATA) & 0xFF)) << 24;
+        }
+
+        return key;
+    }
+
+    /**
+     * Queues a packet for dispatch without blocking.
+     *
+     * @param p packet to queue
+     * @return packet displaced from the ring which must be released by the caller, or null
+     */
+    public synchronized PentairPacket offer(PentairPacket p) {
+        long k = key(p);
+        PentairPacket displaced = null;
+
+        if (count == slots.length) {
+            for (int i = 0; i < count; i++) {
+                int idx = (head + i) % slots.length;
+
+                if (keys[idx] == k) {
+                    displaced = slots[idx];
+                    slots[idx] = p;
+                    coalesced++;
+
+                    return displaced;
+                }
+            }
+
+            // no packet to coalesce with, drop the oldest
+            displaced = slots[head];
+            slots[head] = null;
+            head = (head + 1) % slots.length;
+            count--;
+            dropped++;
+        }
+
+        int tail = (head + count) % slots.length;
+        slots[tail] = p;
+        keys[tail] = k;
+        count++;
+
+        notifyAll();
+
+        return displaced;
+    }
+
+    /**
+     * Takes the oldest packet from the ring, waiting until one is available
+     *
+     * @return packet, to be released by caller after dispatch
+     * @throws InterruptedException
+     */
+    public synchronized PentairPacket take() throws InterruptedException {
+        while (count == 0) {
+            wait();
+        }
+
+        PentairPacket p = slots[head];
+        slots[head] = null;
+        head = (head + 1) % slots.length;
+        count--;
+
+        return p;
+    }
+
+    /**
+     * Removes all packets from the ring
+     *
+     * @param pool decoder owning the packets, used to release them
+     */
+    public synchronized void clear(PentairFrameDecoder pool) {
+        while (count > 0) {
+            pool.release(slots[head]);
+            slots[head] = null;
+            head = (head + 1) % slots.length;
+            count--;
+        }
+    }
+
+    /**
+     * Gets number of packets currently queued
+     *
+     * @return depth of ring
+     */
+    public synchronized int depth() {
+        return count;
+    }
+
+    /**
+     * Gets number of packets dropped because the ring was full
+     *
+     * @return number of dropped packets
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Gets number of packets replaced by a newer packet with the same key because the ring was full
+     *
+     * @return number of coalesced packets
+     */
+    public long getCoalesced() {
+        return coalesced;
+    }
+}
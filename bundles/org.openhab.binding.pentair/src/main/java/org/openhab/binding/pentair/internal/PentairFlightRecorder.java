@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Always-on recorder of the last frames seen on the bus, for diagnosing problems after the fact without debug
+ * logging. Frames are copied as raw bytes with a timestamp into preallocated slots of a ring, so recording does no
+ * formatting and allocates nothing. Frames are only rendered as hex when the ring is dumped.
+ *
+ * @author Jeff James - initial contribution
+ *
+ */
+public class PentairFlightRecorder {
+    /** kind of a recorded frame */
+    public enum Kind {
+        RX, // frame received with a valid checksum
+        ERR, // frame received with an invalid checksum or format
+        TX // frame written
+    }
+
+    /** maximum number of bytes kept of a frame */
+    public static final int SLOT_SIZE = 48;
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private final int size;
+    private final byte[] data;
+    private final long[] timestamps;
+    private final byte[] lengths;
+    private final byte[] kinds;
+    /** number of frames recorded so far, the next slot is count % size */
+    private long count;
+
+    /**
+     * Constructor
+     *
+     * @param size number of frames kept
+     */
+    public PentairFlightRecorder(int size) {
+        this.size = size;
+        this.data = new byte[size * SLOT_SIZE];
+        this.timestamps = new long[size];
+        this.lengths = new byte[size];
+        this.kinds = new byte[size];
+    }
+
+    /**
+     * Records a frame, replacing the oldest frame once the ring is full. Frames longer than {@link #SLOT_SIZE} are
+     * truncated.
+     *
+     * @param kind kind of frame
+     * @param timestamp time of the frame, in {@link System#nanoTime()} units
+     * @param bytes array containing the frame
+     * @param offset index of the first byte of the frame
+     * @param len number of bytes of the frame
+     */
+    public synchronized void record(Kind kind, long timestamp, byte[] bytes, int offset, int len) {
+        int slot = (int) (count++ % size);
+        int n = Math.min(len, SLOT_SIZE);
+
+        System.arraycopy(bytes, offset, data, slot * SLOT_SIZE, n);
+        timestamps[slot] = timestamp;
+        lengths[slot] = (byte) n;
+        kinds[slot] = (byte) kind.ordinal();
+    }
+
+    /**
+     * Gets number of frames recorded since creation, including those no longer in the ring
+     *
+     * @return number of frames
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Renders the frames in the ring, oldest first. Each line holds the time of the frame relative to the newest
+     * frame, the kind and the bytes in hex.
+     *
+     * @return one line per frame
+     */
+    public List<String> dump() {
+        byte[] d;
+        long[] ts;
+        byte[] l;
+        byte[] k;
+        long c;
+
+        // copy under the lock, render outside of it
+        synchronized (this) {
+            d = data.clone();
+            ts = timestamps.clone();
+            l = lengths.clone();
+            k = kinds.clone();
+            c = count;
+        }
+
+        int n = (int) Math.min(c, size);
+        List<String> lines = new ArrayList<>(n);
+
+        if (n == 0) {
+            return lines;
+        }
+
+        long newest = ts[(int) ((c - 1) % size)];
+
+        for (long i = c - n; i < c; i++) {
+            int slot = (int) (i % size);
+            long age = TimeUnit.NANOSECONDS.toMicros(newest - ts[slot]);
+
+            lines.add(String.format("-%d.%03d ms %-3s %s", age / 1000, age % 1000, KINDS[k[slot]],
+                    PentairPacket.bytesToHex(d, slot * SLOT_SIZE, l[slot])));
+        }
+
+        return lines;
+    }
+}
@@ -0,0 +1,506 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resumable decoder for the byte stream on the Pentair bus. Bytes can be pushed in chunks of any size; state for a
+ * partially received frame, including the running checksum, is kept between calls so a frame split across reads is
+ * still decoded. Complete frames are handed to a {@link Listener}. The decoder never blocks and performs no I/O.
+ *
+ * Two frame formats are recognized:
+ *
+ * Pentair: FF 00 FF A5 ... [chksum hi] [chksum lo]
+ * Intellichlor: 10 02 [dest] [cmd] [data ...] [chksum] 10 03
+ *
+ * Intellichlor frames may have any number of data bytes. Within the frame, a 0x10 byte is sent as 10 10 (DLE
+ * escaping), so 10 03 only occurs as trailer. The unescaped bytes are decoded straight into the buffer of a pooled
+ * {@link PentairPacketIntellichlor} as they arrive.
+ *
+ * When a frame is abandoned (missing A5, invalid length, checksum error), the bytes of the frame following its first
+ * byte are decoded again, so a start sequence hidden in line noise or in a corrupt frame is still found and the frame
+ * that follows the noise is not lost.
+ *
+ * A decoder instance is not thread safe and should be fed from a single thread.
+ *
+ * @author Jeff James - initial contribution
+ *
+ */
+public class PentairFrameDecoder {
+    private final Logger logger = LoggerFactory.getLogger(PentairFrameDecoder.class);
+
+    /** default number of packets kept in each packet pool */
+    public static final int POOL_SIZE = 16;
+
+    /**
+     * Interface to receive complete frames from the decoder. Packets are acquired from the decoder's pools and
+     * ownership passes to the listener, which must release them with {@link PentairFrameDecoder#release} when done.
+     */
+    public interface Listener {
+        /**
+         * Called when a complete Pentair packet with a valid checksum has been decoded
+         *
+         * @param p decoded packet
+         */
+        void onPentairPacket(PentairPacket p);
+
+        /**
+         * Called when a complete Intellichlor packet with a valid checksum has been decoded
+         *
+         * @param p decoded packet
+         */
+        void onIntellichlorPacket(PentairPacketIntellichlor p);
+
+        /**
+         * Called when a frame with an invalid checksum has been discarded
+         */
+        default void onChecksumError() {
+        }
+
+        /**
+         * Called when a frame has been abandoned and the decoder is resynchronizing with the stream by rescanning the
+         * bytes of the frame
+         */
+        default void onResync() {
+        }
+    }
+
+    private enum DecoderState {
+        WAIT_SOC, // waiting for start of a command
+        PREAMBLE_FF, // seen one or more 0xFF
+        PREAMBLE_00, // seen FF 00, waiting for FF
+        CMD_PENTAIR, // reading header and data of Pentair command
+        CHKSUM_HI, // reading high byte of Pentair checksum
+        CHKSUM_LO, // reading low byte of Pentair checksum
+        CMD_INTELLICHLOR_STX, // seen 0x10, waiting for 0x02
+        CMD_INTELLICHLOR, // reading Intellichlor command
+        CMD_INTELLICHLOR_DLE // seen 0x10 within Intellichlor command, waiting for 0x10 or 0x03
+    };
+
+    private final Listener listener;
+    private PentairFlightRecorder recorder;
+    private final PentairPacketPool<PentairPacket> packetpool;
+    private final PentairPacketPool<PentairPacketIntellichlor> icpacketpool;
+
+    private DecoderState state = DecoderState.WAIT_SOC;
+    private final byte[] buf = new byte[PentairPacket.MAX_PACKET_SIZE];
+    /** number of bytes of current frame stored in buf */
+    private int index;
+    /** length of data portion of current Pentair frame */
+    private int length;
+    /** running checksum of current frame */
+    private int chksum;
+    /** packet the current Intellichlor frame is decoded into, null if none */
+    private PentairPacketIntellichlor icpacket;
+    /** number of unescaped bytes of current Intellichlor frame stored in icpacket */
+    private int icindex;
+    /** received checksum of current Pentair frame */
+    private int rxchksum;
+    /** time the chunk being decoded was received */
+    private long timestamp;
+    /** time the chunk containing the start of the current frame was received */
+    private long framestart;
+    /** number of frames discarded because of checksum errors */
+    private long checksumerrors;
+    /** number of frames abandoned and rescanned */
+    private long resyncs;
+    /**
+     * bytes of abandoned frames still to be decoded again. Bytes are only taken from the input once it is empty, so a
+     * frame abandoned while it is not empty consists of its bytes only, and a frame and its checksum always fit.
+     */
+    private final byte[] pending = new byte[PentairPacket.MAX_PACKET_SIZE + 2];
+    /** index of next byte in pending to decode */
+    private int pendingpos;
+    /** number of bytes in pending */
+    private int pendingend;
+
+    public PentairFrameDecoder(Listener listener) {
+        this.listener = listener;
+        this.packetpool = new PentairPacketPool<>(POOL_SIZE, () -> new PentairPacket(PentairPacket.MAX_PACKET_SIZE));
+        this.icpacketpool = new PentairPacketPool<>(POOL_SIZE / 4, PentairPacketIntellichlor::new);
+    }
+
+    /**
+     * Returns a packet passed to the listener back to its pool
+     *
+     * @param p packet to release
+     */
+    public void release(PentairPacket p) {
+        if (p instanceof PentairPacketIntellichlor) {
+            icpacketpool.release((PentairPacketIntellichlor) p);
+        } else {
+            packetpool.release(p);
+        }
+    }
+
+    /**
+     * Gets pool supplying Pentair packets
+     *
+     * @return packet pool
+     */
+    public PentairPacketPool<PentairPacket> getPacketPool() {
+        return packetpool;
+    }
+
+    /**
+     * Sets recorder to which every complete frame, valid or not, is recorded
+     *
+     * @param recorder flight recorder, null to disable recording
+     */
+    public void setRecorder(PentairFlightRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Gets time the current frame started, i.e. the time passed to {@link #decode(ByteBuffer, long)} with the chunk
+     * containing the first byte of the frame. Valid during listener callbacks.
+     *
+     * @return start time of frame, in {@link System#nanoTime()} units
+     */
+    public long getFrameStart() {
+        return framestart;
+    }
+
+    /**
+     * Gets number of frames discarded because of checksum errors
+     *
+     * @return number of checksum errors
+     */
+    public long getChecksumErrors() {
+        return checksumerrors;
+    }
+
+    /**
+     * Gets number of frames abandoned because of an invalid header or checksum, after which their bytes have been
+     * rescanned for the start of the next frame
+     *
+     * @return number of resyncs
+     */
+    public long getResyncs() {
+        return resyncs;
+    }
+
+    /**
+     * Resets decoder state, discarding any partially received frame.
+     */
+    public void reset() {
+        state = DecoderState.WAIT_SOC;
+        index = 0;
+        releaseIntellichlor();
+        pendingpos = 0;
+        pendingend = 0;
+    }
+
+    /**
+     * Decodes all remaining bytes in the buffer, recording the time they were received to timestamp frame boundaries
+     *
+     * @param bb buffer positioned at the first byte to decode. On return, position equals limit.
+     * @param timestamp time the bytes were received, in {@link System#nanoTime()} units
+     */
+    public void decode(ByteBuffer bb, long timestamp) {
+        this.timestamp = timestamp;
+        decode(bb);
+    }
+
+    /**
+     * Decodes all remaining bytes in the buffer
+     *
+     * @param bb buffer positioned at the first byte to decode. On return, position equals limit.
+     */
+    public void decode(ByteBuffer bb) {
+        if (bb.hasArray()) {
+            decode(bb.array(), bb.arrayOffset() + bb.position(), bb.remaining());
+            bb.position(bb.limit());
+        } else {
+            while (bb.hasRemaining()) {
+                feed(bb.get() & 0xFF);
+            }
+        }
+    }
+
+    /**
+     * Decodes a chunk of bytes
+     *
+     * @param bytes array containing bytes to decode
+     * @param offset index of first byte to decode
+     * @param len number of bytes to decode
+     */
+    public void decode(byte[] bytes, int offset, int len) {
+        int end = offset + len;
+
+        for (int i = offset; i < end; i++) {
+            feed(bytes[i] & 0xFF);
+        }
+    }
+
+    /**
+     * Decodes a byte of input, followed by the bytes of any frames abandoned meanwhile
+     *
+     * @param c byte (0-255)
+     */
+    private void feed(int c) {
+        decode(c);
+
+        while (pendingpos < pendingend) {
+            decode(pending[pendingpos++] & 0xFF);
+        }
+    }
+
+    /**
+     * Advances the state machine by a single byte
+     *
+     * @param c byte (0-255)
+     */
+    private void decode(int c) {
+        switch (state) {
+            case WAIT_SOC:
+                if (c == 0xFF) { // for CMD_PENTAIR, we need at least one 0xFF
+                    state = DecoderState.PREAMBLE_FF;
+                    framestart = timestamp;
+                } else if (c == 0x10) {
+                    state = DecoderState.CMD_INTELLICHLOR_STX;
+                    framestart = timestamp;
+                }
+                break;
+            case PREAMBLE_FF:
+                if (c == 0x00) {
+                    state = DecoderState.PREAMBLE_00;
+                } else if (c == 0x10) {
+                    state = DecoderState.CMD_INTELLICHLOR_STX;
+                    framestart = timestamp;
+                } else if (c != 0xFF) { // consume all 0xFF
+                    state = DecoderState.WAIT_SOC;
+                }
+                break;
+            case PREAMBLE_00:
+                if (c != 0xFF) {
+                    logger.debug("FF00 !FF");
+                    state = DecoderState.WAIT_SOC;
+                    decode(c); // byte may itself start a new command
+                    break;
+                }
+
+                state = DecoderState.CMD_PENTAIR;
+                index = 0;
+                chksum = 0;
+                break;
+            case CMD_PENTAIR:
+                if (index == 0 && c != 0xA5) {
+                    logger.debug("FF00FF !A5");
+                    rescan(0, false);
+                    // the last 0xFF may itself start the preamble of the next command, e.g. after noise ending in FF00
+                    state = DecoderState.PREAMBLE_FF;
+                    framestart = timestamp;
+                    decode(c);
+                    break;
+                }
+
+                buf[index++] = (byte) c;
+                chksum += c;
+
+                if (index == PentairPacket.LENGTH + 1) {
+                    length = c;
+                    if (length == 0) {
+                        logger.debug("Command length of 0");
+                    }
+                    if (length > PentairPacket.MAX_LENGTH) {
+                        logger.debug("Received packet longer than {} bytes: {}", PentairPacket.MAX_LENGTH, length);
+                        rescan(index, false);
+                        break;
+                    }
+                }
+
+                if (index > PentairPacket.LENGTH && index == length + 6) {
+                    state = DecoderState.CHKSUM_HI;
+                }
+                break;
+            case CHKSUM_HI:
+                rxchksum = c << 8;
+                state = DecoderState.CHKSUM_LO;
+                break;
+            case CHKSUM_LO:
+                rxchksum += c;
+                state = DecoderState.WAIT_SOC;
+
+                if (rxchksum != chksum) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Checksum error: {}", PentairPacket.bytesToHex(buf, length + 6));
+                    }
+                    record(PentairFlightRecorder.Kind.ERR, length + 6);
+                    checksumerrors++;
+                    listener.onChecksumError();
+                    rescan(length + 6, true);
+                    break;
+                }
+
+                record(PentairFlightRecorder.Kind.RX, length + 6);
+
+                PentairPacket p = packetpool.acquire();
+                System.arraycopy(buf, 0, p.buf, 0, length + 6);
+                p.setTimestamp(framestart);
+
+                listener.onPentairPacket(p);
+                break;
+            case CMD_INTELLICHLOR_STX:
+                if (c != 0x02) {
+                    state = DecoderState.WAIT_SOC;
+                    decode(c); // byte may itself start a new command
+                    break;
+                }
+
+                state = DecoderState.CMD_INTELLICHLOR;
+                buf[0] = 0x10; // 0x10 and 0x02 are included in checksum
+                buf[1] = 0x02;
+                index = 2;
+
+                icpacket = icpacketpool.acquire();
+                icpacket.buf[0] = 0x10;
+                icpacket.buf[1] = 0x02;
+                icindex = 2;
+                break;
+            case CMD_INTELLICHLOR:
+                buf[index++] = (byte) c;
+
+                if (c == 0x10) {
+                    state = DecoderState.CMD_INTELLICHLOR_DLE;
+                } else {
+                    icpacket.buf[icindex++] = (byte) c;
+                }
+
+                if (index == buf.length) {
+                    logger.debug("Received Intellichlor command longer than {} bytes", buf.length);
+                    rescan(index, false);
+                }
+                break;
+            case CMD_INTELLICHLOR_DLE:
+                buf[index++] = (byte) c;
+
+                if (c == 0x03) {
+                    emitIntellichlor();
+                    break;
+                }
+
+                if (c != 0x10) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Invalid Intellichlor command: {}", PentairPacket.bytesToHex(buf, index));
+                    }
+                    record(PentairFlightRecorder.Kind.ERR, index);
+                    rescan(index, false);
+                    break;
+                }
+
+                state = DecoderState.CMD_INTELLICHLOR; // escaped 0x10
+                icpacket.buf[icindex++] = (byte) c;
+
+                if (index == buf.length) {
+                    logger.debug("Received Intellichlor command longer than {} bytes", buf.length);
+                    rescan(index, false);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Validates the Intellichlor frame decoded into icpacket and passes it to the listener. On return, the decoder
+     * waits for the next frame.
+     */
+    private void emitIntellichlor() {
+        int length = icindex - 3; // without 10 02 and checksum
+
+        if (length < 2) { // at least dest and command
+            if (logger.isDebugEnabled()) {
+                logger.debug("Intellichlor command too short: {}", PentairPacket.bytesToHex(buf, index));
+            }
+            record(PentairFlightRecorder.Kind.ERR, index);
+            rescan(index, false);
+            return;
+        }
+
+        int sum = 0;
+
+        for (int i = 0; i < length + 2; i++) {
+            sum += icpacket.buf[i] & 0xFF;
+        }
+
+        if ((icpacket.buf[length + 2] & 0xFF) != (sum & 0xFF)) { // make sure it matches chksum
+            if (logger.isDebugEnabled()) {
+                logger.debug("Invalid Intellichlor checksum: {}", PentairPacket.bytesToHex(buf, index));
+            }
+            record(PentairFlightRecorder.Kind.ERR, index);
+            checksumerrors++;
+            listener.onChecksumError();
+            rescan(index, false);
+            return;
+        }
+
+        record(PentairFlightRecorder.Kind.RX, index);
+
+        PentairPacketIntellichlor pic = icpacket;
+        icpacket = null;
+        state = DecoderState.WAIT_SOC;
+
+        pic.buf[length + 3] = 0x10;
+        pic.buf[length + 4] = 0x03;
+        pic.parse(length);
+        pic.setTimestamp(framestart);
+
+        listener.onIntellichlorPacket(pic);
+    }
+
+    /**
+     * Returns the packet of a partially decoded Intellichlor frame, if any, to its pool
+     */
+    private void releaseIntellichlor() {
+        if (icpacket != null) {
+            icpacketpool.release(icpacket);
+            icpacket = null;
+        }
+    }
+
+    /**
+     * Abandons the current frame and queues its bytes, except the first, to be decoded again ahead of any bytes still
+     * pending from an earlier frame
+     *
+     * @param n number of bytes of the frame stored in buf
+     * @param withchksum true to also queue the received Pentair checksum, which is not stored in buf
+     */
+    private void rescan(int n, boolean withchksum) {
+        int count = Math.max(n - 1, 0) + (withchksum ? 2 : 0);
+        int remaining = pendingend - pendingpos;
+
+        System.arraycopy(pending, pendingpos, pending, count, remaining);
+        if (n > 1) {
+            System.arraycopy(buf, 1, pending, 0, n - 1);
+        }
+        if (withchksum) {
+            pending[count - 2] = (byte) (rxchksum >> 8);
+            pending[count - 1] = (byte) rxchksum;
+        }
+
+        pendingpos = 0;
+        pendingend = count + remaining;
+
+        releaseIntellichlor();
+        state = DecoderState.WAIT_SOC;
+        resyncs++;
+        listener.onResync();
+    }
+
+    private void record(PentairFlightRecorder.Kind kind, int len) {
+        PentairFlightRecorder r = recorder;
+
+        if (r != null) {
+            r.record(kind, framestart, buf, 0, len);
+        }
+    }
+}
@@ -10,17 +10,27 @@ package org.openhab.binding.pentair.internal;
 
 import static org.openhab.binding.pentair.internal.PentairBindingConstants.*;
 
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+
+import org.eclipse.smarthome.config.discovery.DiscoveryService;
 import org.eclipse.smarthome.core.thing.Bridge;
 import org.eclipse.smarthome.core.thing.Thing;
 import org.eclipse.smarthome.core.thing.ThingTypeUID;
+import org.eclipse.smarthome.core.thing.ThingUID;
 import org.eclipse.smarthome.core.thing.binding.BaseThingHandlerFactory;
 import org.eclipse.smarthome.core.thing.binding.ThingHandler;
 import org.eclipse.smarthome.core.thing.binding.ThingHandlerFactory;
+import org.openhab.binding.pentair.internal.discovery.PentairDiscoveryService;
+import org.openhab.binding.pentair.internal.handler.PentairBaseBridgeHandler;
 import org.openhab.binding.pentair.internal.handler.PentairControllerHandler;
 import org.openhab.binding.pentair.internal.handler.PentairIPBridgeHandler;
 import org.openhab.binding.pentair.internal.handler.PentairIntelliChlorHandler;
 import org.openhab.binding.pentair.internal.handler.PentairIntelliFloHandler;
+import org.openhab.binding.pentair.internal.handler.PentairReplayBridgeHandler;
 import org.openhab.binding.pentair.internal.handler.PentairSerialBridgeHandler;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.annotations.Component;
 
 /**
@@ -31,6 +41,10 @@ import org.osgi.service.component.annotations.Component;
  */
 @Component(service = ThingHandlerFactory.class, configurationPid = "binding.pentair")
 public class PentairHandlerFactory extends BaseThingHandlerFactory {
+    /** discovery services of the bridges, by bridge UID */
+    private final Map<ThingUID, ServiceRegistration<?>> discoveryServiceRegistrations = new HashMap<>();
+    private final Map<ThingUID, PentairDiscoveryService> discoveryServices = new HashMap<>();
+
     @Override
     public boolean supportsThingType(ThingTypeUID thingTypeUID) {
         return SUPPORTED_THING_TYPES_UIDS.contains(thingTypeUID);
@@ -41,9 +55,11 @@ public class PentairHandlerFactory extends BaseThingHandlerFactory {
         ThingTypeUID thingTypeUID = thing.getThingTypeUID();
 
         if (thingTypeUID.equals(IP_BRIDGE_THING_TYPE)) {
-            return new PentairIPBridgeHandler((Bridge) thing);
+            return registerDiscoveryService(new PentairIPBridgeHandler((Bridge) thing));
         } else if (thingTypeUID.equals(SERIAL_BRIDGE_THING_TYPE)) {
-            return new PentairSerialBridgeHandler((Bridge) thing);
+            return registerDiscoveryService(new PentairSerialBridgeHandler((Bridge) thing));
+        } else if (thingTypeUID.equals(REPLAY_BRIDGE_THING_TYPE)) {
+            return registerDiscoveryService(new PentairReplayBridgeHandler((Bridge) thing));
         } else if (thingTypeUID.equals(CONTROLLER_THING_TYPE)) {
             return new PentairControllerHandler(thing);
         } else if (thingTypeUID.equals(INTELLIFLO_THING_TYPE)) {
@@ -54,4 +70,36 @@ public class PentairHandlerFactory extends BaseThingHandlerFactory {
 
         return null;
     }
+
+    @Override
+    protected synchronized void removeHandler(ThingHandler thingHandler) {
+        ThingUID uid = thingHandler.getThing().getUID();
+        ServiceRegistration<?> registration = discoveryServiceRegistrations.remove(uid);
+        PentairDiscoveryService discoveryService = discoveryServices.remove(uid);
+
+        if (registration != null) {
+            discoveryService.deactivate();
+            registration.unregister();
+        }
+
+        super.removeHandler(thingHandler);
+    }
+
+    /**
+     * Registers a discovery service fed by a bridge, proposing the devices seen on its bus
+     *
+     * @param handler bridge handler
+     * @return handler
+     */
+    private synchronized PentairBaseBridgeHandler registerDiscoveryService(PentairBaseBridgeHandler handler) {
+        PentairDiscoveryService discoveryService = new PentairDiscoveryService(handler);
+        discoveryService.activate();
+
+        ThingUID uid = handler.getThing().getUID();
+        discoveryServiceRegistrations.put(uid,
+                bundleContext.registerService(DiscoveryService.class.getName(), discoveryService, new Hashtable<>()));
+        discoveryServices.put(uid, discoveryService);
+
+        return handler;
+    }
 }
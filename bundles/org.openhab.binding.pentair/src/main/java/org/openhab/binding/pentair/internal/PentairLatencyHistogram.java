@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Histogram of latencies with buckets of exponentially growing width. Bucket 0 counts latencies below 1 us, bucket i
+ * counts latencies from 2^(i-1) us up to 2^i us, and the last bucket counts everything longer. Recording a sample is
+ * a few arithmetic operations and does not allocate.
+ *
+ * @author Jeff James - initial contribution
+ *
+ */
+public class PentairLatencyHistogram {
+    /** number of buckets, the last bucket holds latencies of about 8 s and longer */
+    public static final int BUCKETS = 25;
+
+    private final long[] buckets = new long[BUCKETS];
+    private long count;
+    private long max;
+
+    /**
+     * Records a latency
+     *
+     * @param latency latency in ns, negative values are counted as 0
+     */
+    public synchronized void record(long latency) {
+        long us = Math.max(0, TimeUnit.NANOSECONDS.toMicros(latency));
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(us));
+
+        buckets[bucket]++;
+        count++;
+        max = Math.max(max, us);
+    }
+
+    /**
+     * Gets number of latencies recorded
+     *
+     * @return number of samples
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets longest latency recorded
+     *
+     * @return latency in us
+     */
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /**
+     * Gets an upper bound of the given percentile of the recorded latencies, i.e. the upper end of the bucket it falls
+     * into, capped by the longest latency recorded
+     *
+     * @param percentile percentile, between 0 and 100
+     * @return latency in us, 0 if nothing has been recorded
+     */
+    public synchronized long getPercentile(double percentile) {
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(max, (1L << i) - 1);
+            }
+        }
+
+        return max;
+    }
+
+    /**
+     * Summarizes the histogram for display
+     *
+     * @return count, median, 95th and 99th percentile and maximum
+     */
+    public synchronized String summary() {
+        return String.format("n=%d p50=%.3fms p95=%.3fms p99=%.3fms max=%.3fms", count, getPercentile(50) / 1000.0,
+                getPercentile(95) / 1000.0, getPercentile(99) / 1000.0, max / 1000.0);
+    }
+}
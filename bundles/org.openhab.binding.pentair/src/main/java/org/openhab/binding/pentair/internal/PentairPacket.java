@@ -25,9 +25,16 @@ public class PentairPacket {
     public static final int LENGTH = 3 + OFFSET;
     public static final int STARTOFDATA = 4 + OFFSET;
 
+    /** maximum number of data bytes in a packet */
+    public static final int MAX_LENGTH = 34;
+    /** size of buffer needed to hold any packet without checksum (header + data) */
+    public static final int MAX_PACKET_SIZE = MAX_LENGTH + 6;
+
     protected boolean initialized;
 
     public byte[] buf;
+    /** time the frame started arriving on the bus, in {@link System#nanoTime()} units, 0 if not received */
+    private long timestamp;
 
     /**
      * Constructor for PentairPacket basic packet.
@@ -51,17 +58,69 @@ public class PentairPacket {
     }
 
     /**
-     * Constructor to create a copy of PentairPacket p. Note references the same byte array as original. Used when
-     * coverting from a generic packet to a specialized packet.
+     * Constructor for an empty packet with a buffer large enough to hold any packet. Used for packets that are
+     * repeatedly filled, e.g. by {@link #copyFrom(PentairPacket)} or from a {@link PentairPacketPool}.
+     *
+     * @param size size of buffer to allocate
+     */
+    public PentairPacket(int size) {
+        buf = new byte[size];
+
+        buf[0] = (byte) 0xA5;
+    }
+
+    /**
+     * Constructor to create a copy of PentairPacket p. The bytes are copied into a new array so the copy is not
+     * affected when the original buffer is reused. Used when coverting from a generic packet to a specialized packet.
      *
      * @param p PentairPacket to duplicate in new copy.
      */
     public PentairPacket(PentairPacket p) {
-        this.buf = p.buf;
+        this.buf = new byte[Math.max(p.getPacketLength(), MAX_PACKET_SIZE)];
+        System.arraycopy(p.buf, 0, buf, 0, p.getPacketLength());
+
+        initialized = true;
+    }
+
+    /**
+     * Copies the bytes of packet p into this packet's own buffer, which is only reallocated if too small. Used to
+     * retain a packet without aliasing a buffer that will be reused.
+     *
+     * @param p PentairPacket to copy
+     */
+    public void copyFrom(PentairPacket p) {
+        int n = p.getPacketLength();
+
+        if (buf.length < n) {
+            buf = new byte[Math.max(n, MAX_PACKET_SIZE)];
+        }
+        System.arraycopy(p.buf, 0, buf, 0, n);
 
         initialized = true;
     }
 
+    /**
+     * Gets time the frame of this packet started arriving on the bus
+     *
+     * @return time in {@link System#nanoTime()} units, 0 if the packet was not received
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Gets number of bytes of the packet stored in buf, i.e. header plus data without the checksum
+     *
+     * @return number of bytes
+     */
+    public int getPacketLength() {
+        return getLength() + 6;
+    }
+
     /**
      * Gets length of packet
      *
@@ -166,9 +225,19 @@ public class PentairPacket {
      * @return hex string
      */
     public static String bytesToHex(byte[] bytes, int len) {
+        return bytesToHex(bytes, 0, len);
+    }
+
+    /**
+     * @param bytes array of bytes to convert to a hex string.
+     * @param offset index of first byte to convert
+     * @param len Number of bytes to convert
+     * @return hex string
+     */
+    public static String bytesToHex(byte[] bytes, int offset, int len) {
         char[] hexChars = new char[len * 3];
         for (int j = 0; j < len; j++) {
-            int v = bytes[j] & 0xFF;
+            int v = bytes[offset + j] & 0xFF;
             hexChars[j * 3] = HEXARRAY[v >>> 4];
             hexChars[j * 3 + 1] = HEXARRAY[v & 0x0F];
             hexChars[j * 3 + 2] = ' ';
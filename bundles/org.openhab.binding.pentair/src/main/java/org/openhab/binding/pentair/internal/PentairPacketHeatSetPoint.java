@@ -36,19 +36,18 @@ public class PentairPacketHeatSetPoint extends PentairPacket {
 
     /**
      * Constructor to create a specialized packet representing the generic packet. Note, the internal buffer array is
-     * not
-     * duplicated. Fills in public class members appropriate with the correct values.
+     * copied. Fills in public class members appropriate with the correct values.
      *
      * @param p Generic PentairPacket to create specific Status packet
      */
     public PentairPacketHeatSetPoint(PentairPacket p) {
         super(p);
 
-        poolsetpoint = p.buf[POOLSETPOINT];
-        poolheatmode = p.buf[HEATMODE] & 0x03;
+        poolsetpoint = buf[POOLSETPOINT];
+        poolheatmode = buf[HEATMODE] & 0x03;
 
-        spasetpoint = p.buf[SPASETPOINT];
-        spaheatmode = (p.buf[HEATMODE] >> 2) & 0x03;
+        spasetpoint = buf[SPASETPOINT];
+        spaheatmode = (buf[HEATMODE] >> 2) & 0x03;
     }
 
     /**
@@ -8,12 +8,15 @@
  */
 package org.openhab.binding.pentair.internal;
 
+import java.util.Arrays;
+
 /**
  * Pentair Intellichlor specialation of a PentairPacket. Includes public variables for many of the reverse engineered
  * packet content. Note, Intellichlor packet is of a different format and all helper functions in the base PentairPacket
  * may not apply.
  *
- * This packet can be a 3 or 4 data byte packet.
+ * The packet holds the unescaped frame, [dest] [cmd] followed by any number of data bytes. Commands with 3 or 4 bytes
+ * (including dest and cmd) carry the salt output and salinity values:
  *
  * 10 02 50 00 00 62 10 03
  * 10 02 00 01 00 00 13 10 03
@@ -30,7 +33,12 @@ public class PentairPacketIntellichlor extends PentairPacket { // 29 byte packet
     // 4 Length command
     protected static final int SALINITY = 4;
 
-    /** length of the packet - 3 or 4 data bytes */
+    /** address of the chlorinator, commands from a controller are sent to it */
+    public static final int CHLORINATOR = 0x50;
+    /** command to set the salt output, followed by the output in % */
+    public static final int SET_SALTOUTPUT = 0x11;
+
+    /** length of the packet - number of bytes between 10 02 and the checksum */
     protected int length;
     /** for a saltoutput packet, represents the salt output percent */
     public int saltoutput;
@@ -39,7 +47,7 @@ public class PentairPacketIntellichlor extends PentairPacket { // 29 byte packet
 
     /**
      * Constructor for Intellichlor packet. Does not call super constructure since the Intellichlor packet is structure
-     * so differently
+     * so differently. Note, the byte array is referenced, not copied.
      *
      * @param buf
      * @param length
@@ -48,6 +56,56 @@ public class PentairPacketIntellichlor extends PentairPacket { // 29 byte packet
         this.buf = buf;
         this.length = length;
 
+        decode();
+    }
+
+    /**
+     * Constructor for empty Intellichlor packet
+     */
+    public PentairPacketIntellichlor() {
+        super(MAX_PACKET_SIZE);
+    }
+
+    /**
+     * Refills this packet from a raw Intellichlor frame, copying the bytes into the internal buffer array.
+     *
+     * @param src bytes of the frame, starting with 0x10 0x02
+     * @param length number of data bytes in the frame
+     */
+    public void parse(byte[] src, int length) {
+        int n = length + 5;
+
+        if (buf.length < n) {
+            buf = new byte[Math.max(n, MAX_PACKET_SIZE)];
+        }
+        System.arraycopy(src, 0, buf, 0, n);
+        this.length = length;
+
+        decode();
+    }
+
+    /**
+     * Decodes a frame that has been written directly into the internal buffer array, e.g. by the
+     * {@link PentairFrameDecoder}, starting with 0x10 0x02 and including checksum and trailer.
+     *
+     * @param length number of data bytes in the frame
+     */
+    public void parse(int length) {
+        this.length = length;
+
+        decode();
+    }
+
+    /**
+     * Refills this packet from another Intellichlor packet, reusing the internal buffer array.
+     *
+     * @param p packet to copy
+     */
+    public void parsePacket(PentairPacketIntellichlor p) {
+        parse(p.buf, p.length);
+    }
+
+    private void decode() {
         if (length == 3) {
             saltoutput = buf[SALTOUTPUT];
         } else if (length == 4) {
@@ -55,11 +113,9 @@ public class PentairPacketIntellichlor extends PentairPacket { // 29 byte packet
         }
     }
 
-    /**
-     * Constructor for empty Intellichlor packet
-     */
-    public PentairPacketIntellichlor() {
-        super();
+    @Override
+    public int getPacketLength() {
+        return length + 5;
     }
 
     /*
@@ -85,6 +141,39 @@ public class PentairPacketIntellichlor extends PentairPacket { // 29 byte packet
         this.length = length;
     }
 
+    /**
+     * Builds a frame to write on the bus, adding checksum and trailer and escaping any 0x10 byte
+     *
+     * @param data bytes of the command, starting with the destination
+     * @return frame, starting with 0x10 0x02
+     */
+    public static byte[] buildFrame(int... data) {
+        byte[] frame = new byte[2 * (data.length + 1) + 4]; // room for every byte to be escaped
+        int n = 0;
+        int chksum = 0x10 + 0x02;
+
+        frame[n++] = 0x10;
+        frame[n++] = 0x02;
+        for (int b : data) {
+            n = escape(frame, n, b);
+            chksum += b & 0xFF;
+        }
+        n = escape(frame, n, chksum & 0xFF);
+        frame[n++] = 0x10;
+        frame[n++] = 0x03;
+
+        return Arrays.copyOf(frame, n);
+    }
+
+    private static int escape(byte[] frame, int n, int b) {
+        frame[n++] = (byte) b;
+        if ((b & 0xFF) == 0x10) {
+            frame[n++] = 0x10;
+        }
+
+        return n;
+    }
+
     /**
      * Gets the command byte for this packet
      *
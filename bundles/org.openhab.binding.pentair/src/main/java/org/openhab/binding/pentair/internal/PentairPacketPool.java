@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Pool of reusable packets used on the parse -> dispatch path. The decoder acquires a packet for every complete frame
+ * and whoever consumes the packet releases it once done, so each dispatched frame owns a stable buffer while no new
+ * array is allocated per frame in steady state.
+ *
+ * A packet must not be used after it has been released. Anything that needs to keep packet contents beyond dispatch
+ * has to copy them, e.g. with {@link PentairPacket#copyFrom(PentairPacket)}.
+ *
+ * Acquire and release may be called from different threads.
+ *
+ * @author Jeff James - initial contribution
+ *
+ */
+public class PentairPacketPool<T extends PentairPacket> {
+    private final ArrayBlockingQueue<T> free;
+    private final Supplier<T> factory;
+    /** number of packets allocated because the pool was empty */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param capacity maximum number of free packets kept in pool, the pool is prefilled with this number of packets
+     * @param factory creates a new, empty packet
+     */
+    public PentairPacketPool(int capacity, Supplier<T> factory) {
+        this.free = new ArrayBlockingQueue<>(capacity);
+        this.factory = factory;
+
+        for (int i = 0; i < capacity; i++) {
+            free.offer(factory.get());
+        }
+    }
+
+    /**
+     * Acquires a packet from the pool, allocating a new one if the pool is empty
+     *
+     * @return packet owned by caller until released
+     */
+    public T acquire() {
+        T p = free.poll();
+
+        if (p == null) {
+            misses.incrementAndGet();
+            p = factory.get();
+        }
+
+        return p;
+    }
+
+    /**
+     * Returns a packet to the pool. If the pool is already full, the packet is left for the garbage collector.
+     *
+     * @param p packet to release
+     */
+    public void release(T p) {
+        free.offer(p);
+    }
+
+    /**
+     * Gets number of free packets currently in the pool
+     *
+     * @return number of free packets
+     */
+    public int available() {
+        return free.size();
+    }
+
+    /**
+     * Gets number of times a packet had to be allocated because the pool was empty
+     *
+     * @return number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+}
@@ -58,14 +58,29 @@ public class PentairPacketPumpStatus extends PentairPacket { // 15 byte packet f
 
     /**
      * Constructor to create a specialized packet representing the generic packet. Note, the internal buffer array is
-     * not
-     * duplicated. Fills in public class members appropriate with the correct values.
+     * copied. Fills in public class members appropriate with the correct values.
      *
      * @param p Generic PentairPacket to create specific Status packet
      */
     public PentairPacketPumpStatus(PentairPacket p) {
         super(p);
 
+        decode();
+    }
+
+    /**
+     * Refills this packet from the generic packet, reusing the internal buffer array. Fills in public class members
+     * appropriate with the correct values.
+     *
+     * @param p Generic PentairPacket to parse
+     */
+    public void parsePacket(PentairPacket p) {
+        copyFrom(p);
+
+        decode();
+    }
+
+    private void decode() {
         run = (buf[RUN] == (byte) 0x0A);
         mode = buf[MODE];
         drivestate = buf[DRIVESTATE];
@@ -83,6 +98,6 @@ public class PentairPacketPumpStatus extends PentairPacket { // 15 byte packet f
      * Constructure to create an empty status packet
      */
     public PentairPacketPumpStatus() {
-        super();
+        super(MAX_PACKET_SIZE);
     }
 }
@@ -68,14 +68,29 @@ public class PentairPacketStatus extends PentairPacket { // 29 byte packet forma
 
     /**
      * Constructor to create a specialized packet representing the generic packet. Note, the internal buffer array is
-     * not
-     * duplicated. Fills in public class members appropriate with the correct values.
+     * copied. Fills in public class members appropriate with the correct values.
      *
      * @param p Generic PentairPacket to create specific Status packet
      */
     public PentairPacketStatus(PentairPacket p) {
         super(p);
 
+        decode();
+    }
+
+    /**
+     * Refills this packet from the generic packet, reusing the internal buffer array. Fills in public class members
+     * appropriate with the correct values.
+     *
+     * @param p Generic PentairPacket to parse
+     */
+    public void parsePacket(PentairPacket p) {
+        copyFrom(p);
+
+        decode();
+    }
+
+    private void decode() {
         hour = buf[HOUR];
         min = buf[MIN];
         pool = (buf[EQUIP1] & 0x20) != 0;
@@ -106,7 +121,30 @@ public class PentairPacketStatus extends PentairPacket { // 29 byte packet forma
      * Constructure to create an empty status packet
      */
     public PentairPacketStatus() {
-        super();
+        super(MAX_PACKET_SIZE);
+    }
+
+    /**
+     * Compares the raw status bytes of a generic packet with those of this packet, without decoding the packet. The
+     * time of day is ignored, as it changes every minute but is not published.
+     *
+     * @param p Generic PentairPacket holding a status
+     * @return true if all status bytes other than the time are the same
+     */
+    public boolean sameStatus(PentairPacket p) {
+        int n = p.getPacketLength();
+
+        if (n != getPacketLength()) {
+            return false;
+        }
+
+        for (int i = STARTOFDATA; i < n; i++) {
+            if (i != HOUR && i != MIN && buf[i] != p.buf[i]) {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     @Override
@@ -0,0 +1,198 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Schedules status polls of the devices on a bus, e.g. the pumps. Driven by a periodic {@link #tick}, it polls at most
+ * one device per tick, so polls never bunch up and the load on the bus grows linearly with the number of devices.
+ * When devices are added or removed, their next polls are spread evenly across the base interval.
+ *
+ * The interval of each device adapts to its status: while the status is changing (e.g. a pump ramping up) the device
+ * is polled every {@link #MIN_INTERVAL}, and while the status is steady the interval doubles up to
+ * {@link #MAX_INTERVAL}. A status received without a poll of ours (e.g. because the controller polled the device)
+ * postpones the next poll, so a device is not polled while its status is fresh anyway. Devices can instead be given a
+ * fixed holdoff, so they are only polled once no status has been seen for that long.
+ *
+ * @author Jeff James - initial contribution
+ *
+ * @param <T> type of device
+ */
+public class PentairPollScheduler<T> {
+    /** time between ticks, and thus the minimum time between two polls */
+    public static final long TICK = TimeUnit.SECONDS.toNanos(1);
+    /** interval while the status of a device is changing */
+    public static final long MIN_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+    /** interval of a device which has just been added */
+    public static final long BASE_INTERVAL = TimeUnit.SECONDS.toNanos(30);
+    /** interval while the status of a device is steady */
+    public static final long MAX_INTERVAL = TimeUnit.SECONDS.toNanos(120);
+    /** time from adding the first device to its first poll */
+    public static final long FIRST_POLL_DELAY = TimeUnit.SECONDS.toNanos(2);
+
+    private static class Entry {
+        long due;
+        long interval = BASE_INTERVAL;
+        /** time from any status received until the next poll, replacing the adaptive interval if not 0 */
+        long holdoff;
+        int[] status;
+    }
+
+    private final Consumer<T> poll;
+    private final Map<T, Entry> devices = new IdentityHashMap<>();
+    /** devices in the order they were added, to spread their polls in a stable order */
+    private final List<T> order = new ArrayList<>();
+
+    /**
+     * Constructor
+     *
+     * @param poll called to poll a device, from the thread calling {@link #tick}
+     */
+    public PentairPollScheduler(Consumer<T> poll) {
+        this.poll = poll;
+    }
+
+    /**
+     * Adds a device to be polled
+     *
+     * @param device device
+     * @param now current time, in {@link System#nanoTime()} units
+     */
+    public synchronized void add(T device, long now) {
+        add(device, now, 0);
+    }
+
+    /**
+     * Adds a device which is only polled once no status has been received for a time, e.g. because another master on
+     * the bus polls it
+     *
+     * @param device device
+     * @param now current time, in {@link System#nanoTime()} units
+     * @param holdoff time from adding the device or receiving any status until the next poll, in ns
+     */
+    public synchronized void add(T device, long now, long holdoff) {
+        if (devices.containsKey(device)) {
+            return;
+        }
+
+        Entry e = new Entry();
+        e.holdoff = holdoff;
+        devices.put(device, e);
+        order.add(device);
+        spread(now);
+    }
+
+    /**
+     * Removes a device
+     *
+     * @param device device
+     * @param now current time, in {@link System#nanoTime()} units
+     */
+    public synchronized void remove(T device, long now) {
+        if (devices.remove(device) != null) {
+            order.remove(device);
+            spread(now);
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return devices.isEmpty();
+    }
+
+    /**
+     * Called when the status of a device has been received, whether polled by us or not
+     *
+     * @param device device
+     * @param now current time, in {@link System#nanoTime()} units
+     * @param status values of the status which indicate whether the device is changing, e.g. rpm and power
+     */
+    public synchronized void onStatus(T device, long now, int... status) {
+        Entry e = devices.get(device);
+
+        if (e == null) {
+            return;
+        }
+
+        if (e.status == null) {
+            e.status = status;
+        } else if (Arrays.equals(e.status, status)) {
+            e.interval = Math.min(MAX_INTERVAL, e.interval * 2);
+        } else {
+            e.status = status;
+            e.interval = MIN_INTERVAL;
+        }
+
+        e.due = now + ((e.holdoff > 0) ? e.holdoff : e.interval);
+    }
+
+    /**
+     * Polls the most overdue device, if any is due. Should be called every {@link #TICK}.
+     *
+     * @param now current time, in {@link System#nanoTime()} units
+     */
+    public void tick(long now) {
+        T device = null;
+
+        synchronized (this) {
+            long oldest = 0;
+
+            for (T d : order) {
+                Entry e = devices.get(d);
+                long overdue = now - e.due;
+
+                if (overdue >= 0 && (device == null || overdue > oldest)) {
+                    device = d;
+                    oldest = overdue;
+                }
+            }
+
+            if (device == null) {
+                return;
+            }
+
+            // if no status is received, poll again after the interval
+            Entry e = devices.get(device);
+            e.due = now + e.interval;
+        }
+
+        poll.accept(device);
+    }
+
+    /**
+     * Gets current poll interval of a device
+     *
+     * @param device device
+     * @return interval in ns, 0 if the device is unknown
+     */
+    public synchronized long getInterval(T device) {
+        Entry e = devices.get(device);
+
+        return (e == null) ? 0 : e.interval;
+    }
+
+    /**
+     * Spreads the next polls of all devices evenly across the base interval
+     */
+    private void spread(long now) {
+        int n = order.size();
+
+        for (int i = 0; i < n; i++) {
+            Entry e = devices.get(order.get(i));
+
+            e.due = now + Math.max(FIRST_POLL_DELAY + i * BASE_INTERVAL / n, e.holdoff);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends a batch of queries to a device with a bounded number of queries in flight. As soon as the response to a query
+ * has been received, the next query is written, so the time to complete the batch depends on how fast the device
+ * answers rather than on fixed delays. Queries without a response within the {@link PentairAdaptiveTimeout} are
+ * retried and given up after {@link #MAX_RETRIES} retries. The timeout of a query starts once it has actually been
+ * written, as the bridge may hold it back for an idle gap on the bus.
+ *
+ * A response is matched to a query by its action and, optionally, by the first data byte (e.g. the circuit or schedule
+ * number being queried).
+ *
+ * @author Jeff James - initial contribution
+ *
+ */
+public class PentairQueryPipeline {
+    private final Logger logger = LoggerFactory.getLogger(PentairQueryPipeline.class);
+
+    /** number of times a query is retried before it is given up */
+    public static final int MAX_RETRIES = 2;
+    /** match value for queries where any response with the expected action matches */
+    public static final int ANY = -1;
+
+    private class Query {
+        final byte[] command;
+        final int action;
+        final int match;
+
+        int retries;
+        /** time the query was written, 0 while it is still queued */
+        long sent;
+        ScheduledFuture<?> timeoutjob;
+
+        Query(byte[] command, int action, int match) {
+            this.command = command;
+            this.action = action;
+            this.match = match;
+        }
+
+        boolean matches(PentairPacket p) {
+            return (p.getAction() & 0xFF) == action
+                    && (match == ANY || (p.getByte(PentairPacket.STARTOFDATA) & 0xFF) == match);
+        }
+    }
+
+    private final ScheduledExecutorService scheduler;
+    private final BiConsumer<byte[], Runnable> writer;
+    private final PentairAdaptiveTimeout timeout;
+    private final int window;
+
+    private final ArrayDeque<Query> pending = new ArrayDeque<>();
+    private final List<Query> inflight = new ArrayList<>();
+    private long started;
+
+    /**
+     * Constructor
+     *
+     * @param scheduler scheduler used for timeouts
+     * @param writer queues a command (without preamble and checksum) for writing to the bus, calling the callback
+     *            once the command has been written or dropped
+     * @param timeout response timeout of the device
+     * @param window maximum number of queries in flight
+     */
+    public PentairQueryPipeline(ScheduledExecutorService scheduler, BiConsumer<byte[], Runnable> writer,
+            PentairAdaptiveTimeout timeout, int window) {
+        this.scheduler = scheduler;
+        this.writer = writer;
+        this.timeout = timeout;
+        this.window = window;
+    }
+
+    /**
+     * Adds a query to the pipeline and writes it right away if the window allows
+     *
+     * @param command command to send, starting with A5 and without checksum
+     * @param action action of the expected response
+     * @param match expected first data byte of the response, or {@link #ANY}
+     */
+    public synchronized void add(byte[] command, int action, int match) {
+        if (isComplete()) {
+            started = System.nanoTime();
+        }
+
+        pending.add(new Query(command, action, match));
+        fill();
+    }
+
+    /**
+     * Called for every packet received from the device. Completes the matching query in flight, if any, and writes the
+     * next pending query.
+     *
+     * @param p received packet
+     */
+    public synchronized void onResponse(PentairPacket p) {
+        for (int i = 0; i < inflight.size(); i++) {
+            Query q = inflight.get(i);
+
+            if (q.matches(p)) {
+                if (q.retries == 0 && q.sent != 0) {
+                    timeout.update(System.nanoTime() - q.sent);
+                }
+
+                cancelTimeout(q);
+                inflight.remove(i);
+                fill();
+
+                if (isComplete()) {
+                    logger.debug("Queries completed in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drops all pending queries and queries in flight
+     */
+    public synchronized void cancel() {
+        for (Query q : inflight) {
+            cancelTimeout(q);
+        }
+
+        inflight.clear();
+        pending.clear();
+    }
+
+    /**
+     * Indicates whether all queries have been answered or given up
+     *
+     * @return true if no queries are pending or in flight
+     */
+    public synchronized boolean isComplete() {
+        return pending.isEmpty() && inflight.isEmpty();
+    }
+
+    private void fill() {
+        while (inflight.size() < window && !pending.isEmpty()) {
+            Query q = pending.poll();
+
+            inflight.add(q);
+            write(q);
+        }
+    }
+
+    private void write(Query q) {
+        q.sent = 0;
+        writer.accept(q.command, () -> onWritten(q));
+    }
+
+    /**
+     * Starts the response timeout once the query has left the write queue
+     */
+    private synchronized void onWritten(Query q) {
+        if (!inflight.contains(q) || q.sent != 0) {
+            return;
+        }
+
+        q.sent = System.nanoTime();
+        q.timeoutjob = scheduler.schedule(() -> onTimeout(q), timeout.getTimeout(), TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelTimeout(Query q) {
+        if (q.timeoutjob != null) {
+            q.timeoutjob.cancel(false);
+            q.timeoutjob = null;
+        }
+    }
+
+    private synchronized void onTimeout(Query q) {
+        if (!inflight.contains(q)) {
+            return;
+        }
+
+        timeout.backoff();
+
+        if (q.retries == MAX_RETRIES) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("No response to query {}, giving up", PentairPacket.bytesToHex(q.command));
+            }
+            inflight.remove(q);
+            fill();
+            return;
+        }
+
+        q.retries++;
+        if (logger.isDebugEnabled()) {
+            logger.debug("No response to query {}, retry {}", PentairPacket.bytesToHex(q.command), q.retries);
+        }
+        write(q);
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.library.types.StringType;
+import org.eclipse.smarthome.core.types.State;
+import org.eclipse.smarthome.core.types.UnDefType;
+
+/**
+ * Shared immutable {@link State} instances for the values the binding publishes, so publishing telemetry does not
+ * allocate a new state for every update.
+ *
+ * Numbers in the range of temperatures (signed or unsigned bytes) up to the range of pump speeds and power are cached
+ * as they are first used. String states exist for the fixed value domains of heat modes and schedule types.
+ *
+ * @author Jeff James - initial contribution
+ *
+ */
+public final class PentairStates {
+    /** smallest number cached, a temperature read from a signed byte */
+    private static final int MIN_CACHED = -128;
+    /** largest number cached, above the maximum pump speed and power */
+    private static final int MAX_CACHED = 4095;
+
+    private static final AtomicReferenceArray<DecimalType> DECIMALS = new AtomicReferenceArray<>(
+            MAX_CACHED - MIN_CACHED + 1);
+
+    public static final StringType CELSIUS = new StringType("CELCIUS");
+    public static final StringType FAHRENHEIT = new StringType("FARENHEIT");
+
+    public static final Map<Integer, StringType> HEATMODE = states(PentairControllerConstants.HEATMODE);
+    public static final Map<Integer, StringType> SCHEDULETYPE = states(PentairPacketControllerSchedule.SCHEDULETYPE);
+
+    private PentairStates() {
+    }
+
+    private static Map<Integer, StringType> states(Map<Integer, String> names) {
+        Map<Integer, StringType> map = new HashMap<>();
+
+        for (Map.Entry<Integer, String> entry : names.entrySet()) {
+            map.put(entry.getKey(), new StringType(entry.getValue()));
+        }
+
+        return Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Gets state for a number, shared for numbers in the cached range
+     *
+     * @param value number
+     * @return state
+     */
+    public static DecimalType decimal(long value) {
+        if (value < MIN_CACHED || value > MAX_CACHED) {
+            return new DecimalType(value);
+        }
+
+        int i = (int) value - MIN_CACHED;
+        DecimalType state = DECIMALS.get(i);
+
+        // racing threads may both create a state, either one is fine to keep
+        if (state == null) {
+            state = new DecimalType(value);
+            DECIMALS.set(i, state);
+        }
+
+        return state;
+    }
+
+    /**
+     * Gets state for a switch
+     *
+     * @param value true for on
+     * @return state
+     */
+    public static OnOffType onOff(boolean value) {
+        return value ? OnOffType.ON : OnOffType.OFF;
+    }
+
+    /**
+     * Gets state for a value of a fixed domain, e.g. {@link #HEATMODE}
+     *
+     * @param states states of the domain
+     * @param value value
+     * @return state, {@link UnDefType#UNDEF} for values outside the domain
+     */
+    public static State of(Map<Integer, StringType> states, int value) {
+        StringType state = states.get(value);
+
+        return (state != null) ? state : UnDefType.UNDEF;
+    }
+}
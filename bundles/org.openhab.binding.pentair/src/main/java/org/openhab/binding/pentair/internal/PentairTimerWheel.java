@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel holding one timer per item, e.g. the keepalives of the devices on a bus. Driven by the periodic
+ * {@link #tick} of a single job shared by all items, rather than a scheduled task per item. Timers are kept in slots
+ * of one tick each, so scheduling, cancelling and expiring a timer does not depend on the number of timers. Timers
+ * further out than the wheel span wait for the wheel to come around.
+ *
+ * @author Jeff James - initial contribution
+ *
+ * @param <T> type of item
+ */
+public class PentairTimerWheel<T> {
+    private static class Entry<T> {
+        final T item;
+        /** tick at which the timer expires */
+        final long deadline;
+
+        Entry(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+    }
+
+    private final long tick;
+    private final List<List<Entry<T>>> slots;
+    private final Map<T, Entry<T>> timers = new IdentityHashMap<>();
+    private final Consumer<T> expire;
+    /** items expired by the current tick, reused so ticking does not allocate. Only used by the ticking thread. */
+    private final List<T> expired = new ArrayList<>();
+    /** last tick processed */
+    private long current;
+
+    /**
+     * Constructor
+     *
+     * @param size number of slots of the wheel
+     * @param tick time per slot in ns, the resolution of the timers
+     * @param expire called when the timer of an item expires, from the thread calling {@link #tick}
+     */
+    public PentairTimerWheel(int size, long tick, Consumer<T> expire) {
+        this.tick = tick;
+        this.expire = expire;
+        this.slots = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Sets the timer of an item, replacing a timer already set for it
+     *
+     * @param item item
+     * @param now current time, in {@link System#nanoTime()} units
+     * @param delay time in ns until the timer expires, rounded up to the next tick
+     */
+    public synchronized void schedule(T item, long now, long delay) {
+        cancel(item);
+
+        if (timers.isEmpty()) { // nothing to catch up with
+            current = Math.floorDiv(now, tick);
+        }
+
+        long deadline = Math.max(Math.floorDiv(now + delay + tick - 1, tick), current + 1);
+        Entry<T> e = new Entry<>(item, deadline);
+
+        slot(deadline).add(e);
+        timers.put(item, e);
+    }
+
+    /**
+     * Clears the timer of an item, if set
+     *
+     * @param item item
+     */
+    public synchronized void cancel(T item) {
+        Entry<T> e = timers.remove(item);
+
+        if (e != null) {
+            slot(e.deadline).remove(e);
+        }
+    }
+
+    /**
+     * Indicates whether no timer is set
+     *
+     * @return true if no timer is set
+     */
+    public synchronized boolean isEmpty() {
+        return timers.isEmpty();
+    }
+
+    /**
+     * Advances the wheel to the current time, expiring all timers which are due. The expire callback is called without
+     * holding the lock, so it can set the timer again. Must only be called by one thread at a time, e.g. a single
+     * periodic job.
+     *
+     * @param now current time, in {@link System#nanoTime()} units
+     */
+    public void tick(long now) {
+        synchronized (this) {
+            long target = Math.floorDiv(now, tick);
+
+            // after a long pause, visiting every slot once is enough
+            current = Math.max(current, target - slots.size());
+
+            while (current < target) {
+                current++;
+
+                List<Entry<T>> slot = slot(current);
+                for (int i = slot.size() - 1; i >= 0; i--) {
+                    Entry<T> e = slot.get(i);
+
+                    if (e.deadline <= current) {
+                        slot.remove(i);
+                        timers.remove(e.item);
+                        expired.add(e.item);
+                    }
+                }
+            }
+        }
+
+        try {
+            for (int i = 0; i < expired.size(); i++) {
+                expire.accept(expired.get(i));
+            }
+        } finally {
+            expired.clear();
+        }
+    }
+
+    private List<Entry<T>> slot(long t) {
+        return slots.get((int) Math.floorMod(t, (long) slots.size()));
+    }
+}
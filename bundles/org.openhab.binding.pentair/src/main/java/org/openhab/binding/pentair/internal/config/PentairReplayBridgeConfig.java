@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal.config;
+
+import java.math.BigDecimal;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+
+/**
+ * Configuration parameters for Replay Bridge
+ *
+ * @author Jeff James - initial contribution
+ *
+ */
+public class PentairReplayBridgeConfig {
+    /** capture file to replay */
+    public String file;
+    /** replay speed relative to the captured timing, 0 to replay as fast as possible */
+    public BigDecimal speed;
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this).append("file", file).append("speed", speed).toString();
+    }
+}
@@ -0,0 +1,296 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal.console;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.core.thing.Thing;
+import org.eclipse.smarthome.core.thing.ThingRegistry;
+import org.eclipse.smarthome.core.thing.ThingUID;
+import org.eclipse.smarthome.core.thing.binding.ThingHandler;
+import org.eclipse.smarthome.io.console.Console;
+import org.eclipse.smarthome.io.console.extensions.AbstractConsoleCommandExtension;
+import org.eclipse.smarthome.io.console.extensions.ConsoleCommandExtension;
+import org.openhab.binding.pentair.internal.PentairBusMetrics;
+import org.openhab.binding.pentair.internal.handler.PentairBaseBridgeHandler;
+import org.openhab.binding.pentair.internal.handler.PentairBaseThingHandler;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Reference;
+
+/**
+ * Console commands to inspect the Pentair buses without changing log levels, which would change the timing on the bus:
+ *
+ * pentair stats [seconds [count]] - frame rates per device, error rates and queue depths of each bridge
+ * pentair dump <bridge> - frames in the flight recorder of a bridge
+ * pentair devices - addresses seen on each bus, and the Things they are routed to
+ *
+ * @author Jeff James - initial contribution
+ *
+ */
+@Component(service = ConsoleCommandExtension.class)
+public class PentairConsoleCommandExtension extends AbstractConsoleCommandExtension {
+    private static final String STATS = "stats";
+    private static final String DUMP = "dump";
+    private static final String DEVICES = "devices";
+
+    /** default sample interval of the stats command in seconds */
+    private static final int DEFAULT_INTERVAL = 5;
+
+    private ThingRegistry thingRegistry;
+
+    public PentairConsoleCommandExtension() {
+        super("pentair", "Inspect the Pentair buses.");
+    }
+
+    @Override
+    public void execute(String[] args, Console console) {
+        if (args.length == 0) {
+            printUsage(console);
+            return;
+        }
+
+        try {
+            switch (args[0]) {
+                case STATS:
+                    int interval = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_INTERVAL;
+                    int count = (args.length > 2) ? Integer.parseInt(args[2]) : 1;
+                    stats(console, Math.max(1, interval), Math.max(1, count));
+                    break;
+                case DUMP:
+                    if (args.length < 2) {
+                        printUsage(console);
+                        break;
+                    }
+                    dump(console, args[1]);
+                    break;
+                case DEVICES:
+                    devices(console);
+                    break;
+                default:
+                    console.println("Unknown Pentair sub command '" + args[0] + "'");
+                    printUsage(console);
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            console.println("Invalid number: " + e.getMessage());
+            printUsage(console);
+        }
+    }
+
+    @Override
+    public List<String> getUsages() {
+        return Arrays.asList(
+                buildCommandUsage(STATS + " [<seconds> [<count>]]",
+                        "frame rates per device, error rates and queue depths, sampled over the interval"),
+                buildCommandUsage(DUMP + " <bridgeUID>", "recent frames received and written by the bridge"),
+                buildCommandUsage(DEVICES, "addresses seen on each bus, including unregistered devices"));
+    }
+
+    /**
+     * Samples the metrics of all bridges over an interval and prints the rates, repeated count times
+     */
+    private void stats(Console console, int interval, int count) {
+        List<PentairBaseBridgeHandler> bridges = getBridges();
+
+        if (bridges.isEmpty()) {
+            console.println("No Pentair bridges");
+            return;
+        }
+
+        for (int n = 0; n < count; n++) {
+            List<Sample> before = new ArrayList<>();
+            for (PentairBaseBridgeHandler bridge : bridges) {
+                before.add(new Sample(bridge.getMetrics()));
+            }
+
+            try {
+                TimeUnit.SECONDS.sleep(interval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            for (int i = 0; i < bridges.size(); i++) {
+                PentairBaseBridgeHandler bridge = bridges.get(i);
+                Sample prev = before.get(i);
+                Sample cur = new Sample(bridge.getMetrics());
+                double secs = interval;
+
+                console.println(String.format("%s (%s)", bridge.getThing().getUID(), bridge.getThing().getStatus()));
+                console.println(String.format(
+                        "  rx %.0f B/s, %.1f frames/s, checksum errors %.2f/s, resyncs %.2f/s, tx %.1f frames/s",
+                        (cur.bytes - prev.bytes) / secs, (cur.total() - prev.total()) / secs,
+                        (cur.checksumerrors - prev.checksumerrors) / secs, (cur.resyncs - prev.resyncs) / secs,
+                        (cur.written - prev.written) / secs));
+                console.println(String.format("  dispatch queue %d (dropped %d, coalesced %d), write queue %d",
+                        bridge.getDispatchDepth(), bridge.getDispatchDropped(), bridge.getDispatchCoalesced(),
+                        bridge.getWriteQueueDepth()));
+                console.println(String.format("  dispatch latency %s",
+                        bridge.getMetrics().getDispatchLatency().summary()));
+                console.println(String.format("  ack latency      %s", bridge.getMetrics().getAckLatency().summary()));
+                console.println("  device                frames/s       total");
+
+                for (int source = 0; source < 256; source++) {
+                    if (cur.frames[source] != 0) {
+                        console.println(String.format("  %02X %-18s %8.2f %11d", source, deviceType(source),
+                                (cur.frames[source] - prev.frames[source]) / secs, cur.frames[source]));
+                    }
+                }
+                if (cur.intellichlor != 0) {
+                    console.println(String.format("  -- %-18s %8.2f %11d", "Intellichlor",
+                            (cur.intellichlor - prev.intellichlor) / secs, cur.intellichlor));
+                }
+            }
+
+            if (n < count - 1) {
+                console.println("");
+            }
+        }
+    }
+
+    /**
+     * Prints the frames in the flight recorder of a bridge
+     */
+    private void dump(Console console, String uid) {
+        PentairBaseBridgeHandler bridge = getBridge(uid);
+
+        if (bridge == null) {
+            console.println("Bad bridge id '" + uid + "'");
+            return;
+        }
+
+        List<String> lines = bridge.getFlightRecorder().dump();
+
+        console.println(String.format("%s: last %d of %d frames", bridge.getThing().getUID(), lines.size(),
+                bridge.getFlightRecorder().getCount()));
+        for (String line : lines) {
+            console.println("  " + line);
+        }
+    }
+
+    /**
+     * Prints the addresses seen on each bus with the Thing they are routed to
+     */
+    private void devices(Console console) {
+        for (PentairBaseBridgeHandler bridge : getBridges()) {
+            PentairBusMetrics metrics = bridge.getMetrics();
+            BitSet unregistered = bridge.getUnregistered();
+
+            console.println(String.format("%s (%s)", bridge.getThing().getUID(), bridge.getThing().getStatus()));
+
+            for (int source = 1; source < 256; source++) {
+                long frames = metrics.getFramesFrom(source);
+                PentairBaseThingHandler handler = bridge.findHandler(source);
+
+                if (frames == 0 && handler == null && !unregistered.get(source)) {
+                    continue;
+                }
+
+                console.println(String.format("  %02X %-18s %11d  %s", source, deviceType(source), frames,
+                        (handler != null) ? handler.getThing().getUID()
+                                : unregistered.get(source) ? "unregistered" : "-"));
+            }
+
+            PentairBaseThingHandler chlorinator = bridge.findHandler(0);
+            if (metrics.getIntellichlorFrames() != 0 || chlorinator != null || unregistered.get(0)) {
+                console.println(String.format("  -- %-18s %11d  %s", "Intellichlor", metrics.getIntellichlorFrames(),
+                        (chlorinator != null) ? chlorinator.getThing().getUID() : "unregistered"));
+            }
+        }
+    }
+
+    /**
+     * Gets kind of device usually found at a Pentair bus address
+     */
+    private static String deviceType(int address) {
+        if (address == 0x0F) {
+            return "Broadcast";
+        } else if (address == 0x10) {
+            return "Controller";
+        } else if ((address >> 4) == 0x02) {
+            return "Control panel";
+        } else if ((address >> 4) == 0x06) {
+            return "Intelliflo pump";
+        } else {
+            return "Unknown";
+        }
+    }
+
+    private List<PentairBaseBridgeHandler> getBridges() {
+        List<PentairBaseBridgeHandler> bridges = new ArrayList<>();
+
+        for (Thing thing : thingRegistry.getAll()) {
+            ThingHandler handler = thing.getHandler();
+            if (handler instanceof PentairBaseBridgeHandler) {
+                bridges.add((PentairBaseBridgeHandler) handler);
+            }
+        }
+
+        return bridges;
+    }
+
+    /**
+     * Finds a bridge by its full Thing UID or by the id part of it
+     */
+    private PentairBaseBridgeHandler getBridge(String uid) {
+        for (PentairBaseBridgeHandler bridge : getBridges()) {
+            ThingUID thingUID = bridge.getThing().getUID();
+
+            if (uid.equals(thingUID.getAsString()) || uid.equals(thingUID.getId())) {
+                return bridge;
+            }
+        }
+
+        return null;
+    }
+
+    @Reference
+    protected void setThingRegistry(ThingRegistry thingRegistry) {
+        this.thingRegistry = thingRegistry;
+    }
+
+    protected void unsetThingRegistry(ThingRegistry thingRegistry) {
+        this.thingRegistry = null;
+    }
+
+    /**
+     * Snapshot of the counters of a bridge
+     */
+    private static class Sample {
+        final long bytes;
+        final long checksumerrors;
+        final long resyncs;
+        final long written;
+        final long intellichlor;
+        final long[] frames = new long[256];
+
+        Sample(PentairBusMetrics metrics) {
+            bytes = metrics.getBytesRead();
+            checksumerrors = metrics.getChecksumErrors();
+            resyncs = metrics.getResyncs();
+            written = metrics.getFramesWritten();
+            intellichlor = metrics.getIntellichlorFrames();
+            for (int source = 0; source < 256; source++) {
+                frames[source] = metrics.getFramesFrom(source);
+            }
+        }
+
+        long total() {
+            long n = intellichlor;
+            for (long f : frames) {
+                n += f;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal.discovery;
+
+import static org.openhab.binding.pentair.internal.PentairBindingConstants.*;
+
+import org.eclipse.smarthome.config.discovery.AbstractDiscoveryService;
+import org.eclipse.smarthome.config.discovery.DiscoveryResult;
+import org.eclipse.smarthome.config.discovery.DiscoveryResultBuilder;
+import org.eclipse.smarthome.core.thing.ThingTypeUID;
+import org.eclipse.smarthome.core.thing.ThingUID;
+import org.openhab.binding.pentair.internal.PentairBusMetrics;
+import org.openhab.binding.pentair.internal.handler.PentairBaseBridgeHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Discovers the controller, Intelliflo pumps and Intellichlor on the bus of a bridge. The bridge reports each address
+ * the first time a frame from it is decoded, so discovery costs nothing once the devices are known. A scan proposes
+ * all devices seen so far which do not have a Thing.
+ *
+ * @author Jeff James - initial contribution
+ *
+ */
+public class PentairDiscoveryService extends AbstractDiscoveryService {
+    private final Logger logger = LoggerFactory.getLogger(PentairDiscoveryService.class);
+
+    /** Pentair bus address of the controller */
+    public static final int CONTROLLER_ADDRESS = 0x10;
+    /**
+     * address used for the Intellichlor, which does not use Pentair frames. Outside the range of bus addresses so a
+     * frame from Pentair address 0 is not taken for it; {@link PentairBaseBridgeHandler#findHandler} maps it to the
+     * Intellichlor's route at id 0.
+     */
+    public static final int INTELLICHLOR_ADDRESS = 0x100;
+
+    private final PentairBaseBridgeHandler bridgehandler;
+
+    public PentairDiscoveryService(PentairBaseBridgeHandler bridgehandler) {
+        super(DISCOVERABLE_THING_TYPES_UIDS, 0, false);
+        this.bridgehandler = bridgehandler;
+    }
+
+    /**
+     * Activates the discovery service, so the bridge reports devices to it
+     */
+    public void activate() {
+        bridgehandler.setDiscoveryService(this);
+    }
+
+    @Override
+    public void deactivate() {
+        bridgehandler.setDiscoveryService(null);
+    }
+
+    /**
+     * Indicates whether a Thing can be discovered for an address
+     *
+     * @param address Pentair bus address, or {@link #INTELLICHLOR_ADDRESS}
+     * @return true for the controller, Intelliflo pumps and the Intellichlor
+     */
+    public static boolean isDiscoverable(int address) {
+        return address == CONTROLLER_ADDRESS || address == INTELLICHLOR_ADDRESS || (address >> 4) == 0x06;
+    }
+
+    @Override
+    protected void startScan() {
+        PentairBusMetrics metrics = bridgehandler.getMetrics();
+
+        for (int address = 1; address < 256; address++) {
+            if (metrics.getFramesFrom(address) > 0) {
+                deviceDiscovered(address);
+            }
+        }
+
+        if (metrics.getIntellichlorFrames() > 0) {
+            deviceDiscovered(INTELLICHLOR_ADDRESS);
+        }
+    }
+
+    /**
+     * Proposes a Thing for a device seen on the bus, unless it already has one
+     *
+     * @param address Pentair bus address, or {@link #INTELLICHLOR_ADDRESS}
+     */
+    public void deviceDiscovered(int address) {
+        if (!isDiscoverable(address) || bridgehandler.findHandler(address) != null) {
+            return;
+        }
+
+        ThingTypeUID type;
+        String id;
+        String label;
+
+        if (address == CONTROLLER_ADDRESS) {
+            type = CONTROLLER_THING_TYPE;
+            id = "controller";
+            label = "Pentair Controller";
+        } else if (address == INTELLICHLOR_ADDRESS) {
+            type = INTELLICHLOR_THING_TYPE;
+            id = "intellichlor";
+            label = "Pentair Intellichlor";
+        } else {
+            int pump = address - 0x60 + 1;
+
+            type = INTELLIFLO_THING_TYPE;
+            id = "pump" + pump;
+            label = "Pentair Intelliflo Pump " + pump;
+        }
+
+        ThingUID bridgeUID = bridgehandler.getThing().getUID();
+        ThingUID thingUID = new ThingUID(type, bridgeUID, id);
+        DiscoveryResultBuilder builder = DiscoveryResultBuilder.create(thingUID).withBridge(bridgeUID)
+                .withLabel(label);
+
+        if (address != INTELLICHLOR_ADDRESS) {
+            builder.withProperty("id", address).withRepresentationProperty("id");
+        }
+
+        DiscoveryResult result = builder.build();
+
+        logger.debug("Discovered {} at address {}", thingUID, address);
+        thingDiscovered(result);
+    }
+}
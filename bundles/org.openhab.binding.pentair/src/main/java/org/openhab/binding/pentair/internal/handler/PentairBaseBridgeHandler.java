@@ -8,24 +8,44 @@
  */
 package org.openhab.binding.pentair.internal.handler;
 
+import static org.openhab.binding.pentair.internal.PentairBindingConstants.*;
+
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.BitSet;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 
+import org.eclipse.smarthome.core.library.types.DecimalType;
 import org.eclipse.smarthome.core.thing.Bridge;
 import org.eclipse.smarthome.core.thing.ChannelUID;
 import org.eclipse.smarthome.core.thing.Thing;
 import org.eclipse.smarthome.core.thing.ThingStatus;
 import org.eclipse.smarthome.core.thing.ThingStatusDetail;
 import org.eclipse.smarthome.core.thing.binding.BaseBridgeHandler;
+import org.eclipse.smarthome.core.thing.binding.ThingHandler;
 import org.eclipse.smarthome.core.types.Command;
 import org.eclipse.smarthome.core.types.RefreshType;
+import org.openhab.binding.pentair.internal.PentairBusMetrics;
+import org.openhab.binding.pentair.internal.PentairBusMonitor;
+import org.openhab.binding.pentair.internal.PentairCaptureWriter;
+import org.openhab.binding.pentair.internal.PentairDispatchRing;
+import org.openhab.binding.pentair.internal.PentairFlightRecorder;
+import org.openhab.binding.pentair.internal.PentairFrameDecoder;
 import org.openhab.binding.pentair.internal.PentairPacket;
 import org.openhab.binding.pentair.internal.PentairPacketIntellichlor;
+import org.openhab.binding.pentair.internal.PentairPollScheduler;
+import org.openhab.binding.pentair.internal.PentairStates;
+import org.openhab.binding.pentair.internal.PentairTimerWheel;
+import org.openhab.binding.pentair.internal.discovery.PentairDiscoveryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,17 +53,45 @@ import org.slf4j.LoggerFactory;
  * Abstract class for all common functions for different bridge implementations. Use as superclass for IPBridge and
  * SerialBridge implementations.
  *
- * - Implements parsing of packets on Pentair bus and dispositions to appropriate Thing
+ * - Reads the Pentair bus, decodes packets with a {@link PentairFrameDecoder} and queues them in a
+ * {@link PentairDispatchRing}
+ * - Dispositions queued packets to appropriate Thing on a separate dispatch thread
  * - Periodically sends query to any {@link PentairIntelliFloHandler} things
- * - Provides function to write packets
+ * - Keeps a {@link PentairDeviceRegistry} of the controller and pumps online on its bus
+ * - Provides function to write packets, which are queued and written by a separate thread in idle gaps on the bus
+ * - Supervises the connection, reconnecting with exponential backoff when it is lost
+ * - Optionally captures the raw bytes received to a file, see {@link PentairCaptureWriter}
  *
  * @author Jeff James - Initial contribution
  *
  */
-public abstract class PentairBaseBridgeHandler extends BaseBridgeHandler {
+public abstract class PentairBaseBridgeHandler extends BaseBridgeHandler implements PentairFrameDecoder.Listener {
     private final Logger logger = LoggerFactory.getLogger(PentairBaseBridgeHandler.class);
 
-    /** input stream - subclass needs to assign in connect function */
+    /** size of the buffer used for bulk reads from the transport */
+    protected static final int READ_BUFFER_SIZE = 1024;
+    /** number of decoded packets which can be queued for dispatch */
+    protected static final int DISPATCH_RING_SIZE = 32;
+    /** interval in seconds between updates of the bridge statistics channels */
+    protected static final int STATS_INTERVAL = 10;
+    /** number of packets which can be queued for writing */
+    protected static final int WRITE_QUEUE_SIZE = 32;
+    /** maximum time in ns a packet is held back waiting for an idle gap on the bus */
+    protected static final long MAX_HOLD = TimeUnit.MILLISECONDS.toNanos(500);
+    /** delay in ms before the second reconnect attempt, doubled for every further attempt */
+    protected static final long RECONNECT_INITIAL_DELAY = 1000;
+    /** maximum delay in ms between reconnect attempts */
+    protected static final long RECONNECT_MAX_DELAY = 60000;
+    /** maximum time in ms to wait for the parser thread to exit once the transport has been closed */
+    protected static final long JOIN_TIMEOUT = 2000;
+    /** number of frames kept by the flight recorder */
+    protected static final int RECORDER_SIZE = 256;
+    /** number of statistics updates between updates of the metrics Thing properties */
+    protected static final int PROPERTIES_INTERVAL = 6;
+    /** number of slots of the keepalive timer wheel, one tick each */
+    protected static final int KEEPALIVE_SLOTS = 64;
+
+    /** input stream - subclass needs to assign in connect function, unless {@link #fillBuffer} is overridden */
     protected BufferedInputStream reader;
     /** output stream - subclass needs to assing in connect function */
     protected BufferedOutputStream writer;
@@ -51,14 +99,68 @@ public abstract class PentairBaseBridgeHandler extends BaseBridgeHandler {
     protected Thread thread;
     /** parser object - subclass needs to create/assign during connect */
     protected Parser parser;
-    /** polling job for reconnecting */
-    protected ScheduledFuture<?> pollingjob;
+    /** decoder for the byte stream, fed by the parser */
+    protected final PentairFrameDecoder decoder = new PentairFrameDecoder(this);
+    /** last frames received and written, always on so they can be dumped when something goes wrong */
+    protected final PentairFlightRecorder recorder = new PentairFlightRecorder(RECORDER_SIZE);
+    /** counters and latency histograms */
+    protected final PentairBusMetrics metrics = new PentairBusMetrics();
+    /** number of statistics updates since the metrics Thing properties were last updated */
+    private int statsupdates;
+    /** ring of decoded packets waiting to be dispositioned to the Things */
+    protected final PentairDispatchRing ring = new PentairDispatchRing(DISPATCH_RING_SIZE);
+    /** thread taking packets from the ring and dispositioning them */
+    private Thread dispatchthread;
+    /** pending reconnect attempt */
+    private ScheduledFuture<?> reconnectjob;
+    /** number of reconnect attempts since data was last received */
+    private int reconnectattempts;
+    /** set once the handler is disposed, no further reconnects are attempted */
+    private volatile boolean disposed;
+    /** set once data has been received on the current connection */
+    private volatile boolean received;
+    /** capture of received bytes, null if not capturing */
+    private volatile PentairCaptureWriter capture;
+    /** job to update the bridge statistics channels */
+    private ScheduledFuture<?> statsjob;
+    /** tracks bus activity to find idle gaps for writing */
+    protected final PentairBusMonitor monitor = new PentairBusMonitor();
+    /** frames waiting to be written, including preamble and checksum */
+    private final ArrayBlockingQueue<QueuedFrame> writequeue = new ArrayBlockingQueue<>(WRITE_QUEUE_SIZE);
+    /** thread taking frames from the write queue and writing them */
+    private Thread writerthread;
+    /** reusable buffer holding bytes read in bulk from the transport, consumed by the parser */
+    protected final ByteBuffer readbuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
     /** ID to use when sending commands on Pentair bus - subclass needs to assign based on configuration parameter */
     protected int id;
-    /** array to keep track of IDs seen on the Pentair bus that do not correlate to a configured Thing object */
-    protected ArrayList<Integer> unregistered = new ArrayList<>();
-
-    protected ConnectState connectstate;
+    /** routing table of child handlers indexed by Pentair bus id, maintained as child handlers come and go */
+    private final AtomicReferenceArray<PentairBaseThingHandler> routes = new AtomicReferenceArray<>(256);
+    /**
+     * bitset to keep track of IDs seen on the Pentair bus that do not correlate to a configured Thing object, modified
+     * while synchronized on it
+     */
+    protected final BitSet unregistered = new BitSet(256);
+    /**
+     * addresses frames have been decoded from, {@link PentairDiscoveryService#INTELLICHLOR_ADDRESS} for the
+     * Intellichlor. Only accessed by the parser thread.
+     */
+    private final BitSet seen = new BitSet(PentairDiscoveryService.INTELLICHLOR_ADDRESS + 1);
+    /** discovery service to report newly seen devices to, null if none */
+    private volatile PentairDiscoveryService discoveryservice;
+    /** devices online on this bridge's bus */
+    protected final PentairDeviceRegistry registry = new PentairDeviceRegistry();
+    /** schedules status queries to the pumps, staggered and adapted to how much their status changes */
+    private final PentairPollScheduler<PentairIntelliFloHandler> pumppoller = new PentairPollScheduler<>(
+            PentairIntelliFloHandler::requestPumpStatus);
+    /** keepalives of the chlorinators, sharing the tick of the pump poller */
+    private final PentairTimerWheel<PentairIntelliChlorHandler> keepalives = new PentairTimerWheel<>(KEEPALIVE_SLOTS,
+            PentairPollScheduler.TICK, PentairIntelliChlorHandler::keepalive);
+    /** job ticking the pump poller and the keepalives, runs while any pump is online or any keepalive is set */
+    private ScheduledFuture<?> tickjob;
+    /** UIDs of the bridge channels, so channel updates do not build them */
+    private final PentairChannelTable channels;
+
+    protected volatile ConnectState connectstate;
 
     /**
      * Gets pentair bus id
@@ -69,6 +171,42 @@ public abstract class PentairBaseBridgeHandler extends BaseBridgeHandler {
         return id;
     }
 
+    /**
+     * Gets registry of the devices online on this bridge's bus
+     *
+     * @return registry
+     */
+    public PentairDeviceRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Gets counters and latency histograms of this bridge
+     *
+     * @return metrics
+     */
+    public PentairBusMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets discovery service to report devices seen on the bus to
+     *
+     * @param discoveryservice discovery service, null to stop reporting
+     */
+    public void setDiscoveryService(PentairDiscoveryService discoveryservice) {
+        this.discoveryservice = discoveryservice;
+    }
+
+    /**
+     * Gets flight recorder holding the last frames received and written on this bridge's bus
+     *
+     * @return flight recorder
+     */
+    public PentairFlightRecorder getFlightRecorder() {
+        return recorder;
+    }
+
     private enum ConnectState {
         CONNECTING,
         DISCONNECTED,
@@ -76,12 +214,6 @@ public abstract class PentairBaseBridgeHandler extends BaseBridgeHandler {
         INIT
     };
 
-    private enum ParserState {
-        WAIT_SOC,
-        CMD_PENTAIR,
-        CMD_INTELLICHLOR
-    };
-
     /**
      * Constructor
      *
@@ -90,6 +222,8 @@ public abstract class PentairBaseBridgeHandler extends BaseBridgeHandler {
     PentairBaseBridgeHandler(Bridge bridge) {
         super(bridge);
         connectstate = ConnectState.INIT;
+        channels = new PentairChannelTable(bridge.getUID());
+        decoder.setRecorder(recorder);
     }
 
     @Override
@@ -103,27 +237,189 @@ public abstract class PentairBaseBridgeHandler extends BaseBridgeHandler {
     public void initialize() {
         logger.debug("initializing Pentair Bridge handler.");
 
-        connectstate = ConnectState.CONNECTING;
-        if (connect() != 0) {
-            return;
-        }
-        connectstate = ConnectState.CONNECTED;
-        // successfully connected with current configuration, so start job to check for reconnection in case it gets
-        // disconnected
+        dispatchthread = new Thread(new Dispatcher(), "pentair-dispatch-" + getThing().getUID().getId());
+        dispatchthread.setDaemon(true);
+        dispatchthread.start();
 
-        pollingjob = scheduler.scheduleWithFixedDelay(new ReconnectIO(), 10, 30, TimeUnit.SECONDS);
+        writerthread = new Thread(new Writer(), "pentair-writer-" + getThing().getUID().getId());
+        writerthread.setDaemon(true);
+        writerthread.start();
+
+        statsjob = scheduler.scheduleWithFixedDelay(this::updateStats, STATS_INTERVAL, STATS_INTERVAL,
+                TimeUnit.SECONDS);
+
+        startCapture();
+
+        disposed = false;
+        reconnectattempts = 0;
+        if (_connect() != 0) {
+            scheduleReconnect();
+        }
     }
 
     @Override
     public void dispose() {
         logger.debug("Handler disposed.");
-        pollingjob.cancel(true);
-        disconnect();
+        synchronized (this) {
+            disposed = true;
+            if (reconnectjob != null) {
+                reconnectjob.cancel(false);
+                reconnectjob = null;
+            }
+        }
+        if (statsjob != null) {
+            statsjob.cancel(true);
+        }
+        synchronized (registry) {
+            if (tickjob != null) {
+                tickjob.cancel(true);
+                tickjob = null;
+            }
+        }
+        _disconnect();
+
+        stopThread(writerthread);
+        writerthread = null;
+        writequeue.clear();
+
+        stopThread(dispatchthread);
+        dispatchthread = null;
+        ring.clear(decoder);
+
+        stopCapture();
+    }
+
+    /**
+     * Starts capturing received bytes if a capture file is configured
+     */
+    private void startCapture() {
+        Object file = getConfig().get(CONFIG_CAPTUREFILE);
+
+        if (file == null || file.toString().isEmpty()) {
+            return;
+        }
+
+        try {
+            capture = new PentairCaptureWriter(Paths.get(file.toString()));
+            logger.info("Capturing bus traffic to {}", file);
+        } catch (IOException e) {
+            logger.warn("Unable to open capture file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void stopCapture() {
+        PentairCaptureWriter c = capture;
+
+        capture = null;
+        if (c == null) {
+            return;
+        }
+
+        try {
+            c.close();
+            logger.info("Captured {} bytes", c.size());
+        } catch (IOException e) {
+            logger.warn("Error closing capture file: {}", e.getMessage());
+        }
+    }
+
+    private void stopThread(Thread t) {
+        if (t == null) {
+            return;
+        }
+
+        t.interrupt();
+        try {
+            t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets number of decoded packets waiting for dispatch
+     *
+     * @return depth of dispatch ring
+     */
+    public int getDispatchDepth() {
+        return ring.depth();
+    }
+
+    /**
+     * Gets number of packets dropped because the dispatch ring was full
+     *
+     * @return number of dropped packets
+     */
+    public long getDispatchDropped() {
+        return ring.getDropped();
+    }
+
+    /**
+     * Gets number of packets coalesced with a newer packet because the dispatch ring was full
+     *
+     * @return number of coalesced packets
+     */
+    public long getDispatchCoalesced() {
+        return ring.getCoalesced();
+    }
+
+    /**
+     * Gets number of frames waiting to be written
+     *
+     * @return depth of write queue
+     */
+    public int getWriteQueueDepth() {
+        return writequeue.size();
+    }
+
+    /**
+     * Gets Pentair bus ids seen on the bus which do not correlate to a configured Thing. Id 0 stands for the
+     * Intellichlor.
+     *
+     * @return copy of the set of unregistered ids
+     */
+    public BitSet getUnregistered() {
+        synchronized (unregistered) {
+            return (BitSet) unregistered.clone();
+        }
+    }
+
+    /**
+     * Updates the bridge statistics channels
+     */
+    protected void updateStats() {
+        updateState(channels.get(BRIDGE_DISPATCHDEPTH), PentairStates.decimal(ring.depth()));
+        updateState(channels.get(BRIDGE_DISPATCHDROPPED), PentairStates.decimal(ring.getDropped()));
+        updateState(channels.get(BRIDGE_DISPATCHCOALESCED), PentairStates.decimal(ring.getCoalesced()));
+        updateState(channels.get(BRIDGE_BUSUTILIZATION),
+                PentairStates.decimal(monitor.sampleUtilization(System.nanoTime())));
+        updateState(channels.get(BRIDGE_COLLISIONS), PentairStates.decimal(monitor.getCollisions()));
+
+        updateState(channels.get(BRIDGE_BYTESREAD), PentairStates.decimal(metrics.getBytesRead()));
+        updateState(channels.get(BRIDGE_FRAMESDECODED), PentairStates.decimal(metrics.getFramesDecoded()));
+        updateState(channels.get(BRIDGE_CHECKSUMERRORS), PentairStates.decimal(metrics.getChecksumErrors()));
+        updateState(channels.get(BRIDGE_RESYNCS), PentairStates.decimal(metrics.getResyncs()));
+        updateState(channels.get(BRIDGE_UNREGISTEREDFRAMES), PentairStates.decimal(metrics.getUnregisteredFrames()));
+        updateState(channels.get(BRIDGE_FRAMESWRITTEN), PentairStates.decimal(metrics.getFramesWritten()));
+        updateState(channels.get(BRIDGE_WRITEERRORS), PentairStates.decimal(metrics.getWriteErrors()));
+        updateState(channels.get(BRIDGE_RECONNECTS), PentairStates.decimal(metrics.getReconnects()));
+        // latencies are fractional ms, which have no cached states
+        updateState(channels.get(BRIDGE_DISPATCHLATENCY),
+                new DecimalType(metrics.getDispatchLatency().getPercentile(95) / 1000.0));
+        updateState(channels.get(BRIDGE_ACKLATENCY),
+                new DecimalType(metrics.getAckLatency().getPercentile(95) / 1000.0));
+
+        // properties are persisted with the Thing, so they are updated less often than the channels
+        if (++statsupdates >= PROPERTIES_INTERVAL) {
+            statsupdates = 0;
+            updateProperties(metrics.toProperties());
+        }
     }
 
     /**
      * Abstract method for creating connection. Must be implemented in subclass.
-     * Return 0 if all goes well.
+     * Return 0 if all goes well. Called without holding the handler's monitor, so a slow connect does not block
+     * dispose, which has to be able to abort it through {@link #disconnect()}.
      *
      * @throws Exception
      */
@@ -133,6 +429,8 @@ public abstract class PentairBaseBridgeHandler extends BaseBridgeHandler {
         int ret;
 
         connectstate = ConnectState.CONNECTING;
+        received = false;
+        decoder.reset();
 
         ret = connect();
         if (ret == 0) {
@@ -150,104 +448,391 @@ public abstract class PentairBaseBridgeHandler extends BaseBridgeHandler {
     protected abstract void disconnect();
 
     private void _disconnect() {
-        disconnect();
         connectstate = ConnectState.DISCONNECTED;
+        disconnect();
     }
 
-    // Job to pull to try and reconnect upon being disconnected. Note this should only be started on an initial
-    // successful connection which would mean the configuration settings have been set correctly.
-    class ReconnectIO implements Runnable {
-        @Override
-        public void run() {
-            if (connectstate == ConnectState.DISCONNECTED) {
-                _connect();
+    /**
+     * Called when the transport fails, e.g. on an I/O error or when the other end closed the connection. Tears down the
+     * connection and schedules a reconnect. Only the first caller acts if several threads detect the failure at once.
+     *
+     * @param reason description of the failure
+     */
+    protected void connectionLost(String reason) {
+        synchronized (this) {
+            if (connectstate != ConnectState.CONNECTED) {
+                return;
             }
+            connectstate = ConnectState.DISCONNECTED;
         }
+
+        logger.info("Connection lost: {}", reason);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Last frames before connection was lost:");
+            for (String line : recorder.dump()) {
+                logger.debug("  {}", line);
+            }
+        }
+
+        disconnect();
+        updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR, reason);
+        scheduleReconnect();
     }
 
     /**
-     * Helper function to find a Thing assigned to this bridge with a specific pentair bus id.
-     *
-     * @param id Pentair bus id
-     * @return Thing object. null if id is not found.
+     * Schedules the next reconnect attempt. The first attempt after a failure is made right away, further attempts back
+     * off exponentially with random jitter so several bridges do not hammer a rebooting gateway in step.
      */
-    public Thing findThing(int id) {
-        List<Thing> things = getThing().getThings();
+    private synchronized void scheduleReconnect() {
+        if (disposed || (reconnectjob != null && !reconnectjob.isDone())) {
+            return;
+        }
 
-        for (Thing t : things) {
-            PentairBaseThingHandler handler = (PentairBaseThingHandler) t.getHandler();
+        long delay = 0;
+        if (reconnectattempts > 0) {
+            delay = Math.min(RECONNECT_MAX_DELAY, RECONNECT_INITIAL_DELAY << Math.min(reconnectattempts - 1, 16));
+            delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        }
+        reconnectattempts++;
 
-            if (handler != null && handler.getPentairID() == id) {
-                return t;
+        logger.debug("Reconnect attempt {} in {} ms", reconnectattempts, delay);
+        reconnectjob = scheduler.schedule(this::reconnect, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void reconnect() {
+        synchronized (this) {
+            reconnectjob = null;
+
+            if (disposed || connectstate == ConnectState.CONNECTED) {
+                return;
+            }
+        }
+
+        // connect outside the lock, a gateway which does not answer must not hold up dispose
+        if (_connect() == 0) {
+            synchronized (this) {
+                if (!disposed) {
+                    metrics.onReconnect();
+                    return;
+                }
             }
+
+            // disposed while connecting, tear down what was just set up
+            _disconnect();
+            return;
         }
 
-        return null;
+        scheduleReconnect();
+    }
+
+    /**
+     * Resets the reconnect backoff, called once data has been received on a new connection
+     */
+    private synchronized void resetBackoff() {
+        reconnectattempts = 0;
+    }
+
+    /**
+     * Interrupts the parser thread. Subclasses call this in {@link #disconnect()} before closing the transport, so the
+     * parser treats the resulting I/O error as part of the disconnect.
+     */
+    protected void interruptParser() {
+        Thread t = thread;
+
+        if (t != null) {
+            t.interrupt();
+        }
     }
 
     /**
-     * Class for throwing an End of Buffer exception, used in getByte when read returns a -1. This is used to signal an
-     * exit from the parser.
+     * Waits a bounded time for the parser thread to exit. Subclasses call this in {@link #disconnect()} after closing
+     * the transport, which unblocks a parser waiting for data.
+     */
+    protected void joinParser() {
+        Thread t = thread;
+
+        thread = null;
+        parser = null;
+
+        if (t == null || t == Thread.currentThread()) {
+            return;
+        }
+
+        try {
+            t.join(JOIN_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (t.isAlive()) {
+            logger.warn("Parser thread did not exit within {} ms", JOIN_TIMEOUT);
+        }
+    }
+
+    @Override
+    public void childHandlerInitialized(ThingHandler childHandler, Thing childThing) {
+        if (childHandler instanceof PentairBaseThingHandler) {
+            PentairBaseThingHandler handler = (PentairBaseThingHandler) childHandler;
+
+            handler.setBridgeHandler(this);
+            updateRoute(handler, -1, handler.getPentairID());
+        }
+    }
+
+    @Override
+    public void childHandlerDisposed(ThingHandler childHandler, Thing childThing) {
+        if (childHandler instanceof PentairBaseThingHandler) {
+            PentairBaseThingHandler handler = (PentairBaseThingHandler) childHandler;
+
+            updateRoute(handler, handler.getPentairID(), -1);
+            handler.setBridgeHandler(null);
+        }
+
+        if (childHandler instanceof PentairControllerHandler) {
+            registry.clearController((PentairControllerHandler) childHandler);
+        } else if (childHandler instanceof PentairIntelliFloHandler) {
+            pumpOffline((PentairIntelliFloHandler) childHandler);
+        } else if (childHandler instanceof PentairIntelliChlorHandler) {
+            cancelKeepalive((PentairIntelliChlorHandler) childHandler);
+        }
+    }
+
+    /**
+     * Registers a pump which went online and starts polling the pumps if it is the first one
+     *
+     * @param pump pump handler
+     * @param holdoff time in ns without a status of the pump before it is polled, 0 to poll it regardless
+     */
+    public void pumpOnline(PentairIntelliFloHandler pump, long holdoff) {
+        synchronized (registry) {
+            registry.addPump(pump);
+            pumppoller.add(pump, System.nanoTime(), holdoff);
+            startTicking();
+        }
+    }
+
+    /**
+     * Unregisters a pump which went offline and stops polling once no pump is left
+     *
+     * @param pump pump handler
+     */
+    public void pumpOffline(PentairIntelliFloHandler pump) {
+        synchronized (registry) {
+            registry.removePump(pump);
+            pumppoller.remove(pump, System.nanoTime());
+            stopTickingIfIdle();
+        }
+    }
+
+    /**
+     * Called when a status of a pump has been received, whether queried by the bridge or not, so the pump is polled
+     * faster while it is changing and less often while it is steady.
+     * Note: From the internet is seems some FW versions of EasyTouch controllers query the pumps themselves, in which
+     * case the status is snooped and the bridge's own queries are postponed.
+     *
+     * @param pump pump handler
+     * @param rpm current rpm of the pump
+     * @param power current power of the pump
+     */
+    public void pumpStatus(PentairIntelliFloHandler pump, int rpm, int power) {
+        pumppoller.onStatus(pump, System.nanoTime(), rpm, power);
+    }
+
+    /**
+     * Sets the keepalive timer of a chlorinator, replacing a timer already set for it. When it expires,
+     * {@link PentairIntelliChlorHandler#keepalive} is called from the scheduler.
      *
-     * @author Jeff James - initial contribution
+     * @param chlorinator chlorinator handler
+     * @param delay time in ns until the keepalive is due
+     */
+    public void scheduleKeepalive(PentairIntelliChlorHandler chlorinator, long delay) {
+        synchronized (registry) {
+            keepalives.schedule(chlorinator, System.nanoTime(), delay);
+            startTicking();
+        }
+    }
+
+    /**
+     * Clears the keepalive timer of a chlorinator
      *
+     * @param chlorinator chlorinator handler
      */
-    public class EOBException extends Exception {
-        private static final long serialVersionUID = 1L;
+    public void cancelKeepalive(PentairIntelliChlorHandler chlorinator) {
+        synchronized (registry) {
+            keepalives.cancel(chlorinator);
+            stopTickingIfIdle();
+        }
     }
 
     /**
-     * Gets a single byte from reader input stream
+     * Indicates whether a controller is active on the bus, in which case it drives the other devices, e.g. the
+     * chlorinator, and the bridge should not
      *
-     * @param s used during debug to identify proper state transitioning
-     * @return next byte from reader
-     * @throws EOBException
+     * @return true if the controller's status broadcast has been seen recently
+     */
+    public boolean isControllerActive() {
+        return monitor.isControllerActive(System.nanoTime());
+    }
+
+    /** must be called synchronized on registry */
+    private void startTicking() {
+        if (tickjob == null) {
+            tickjob = scheduler.scheduleWithFixedDelay(this::tick, PentairPollScheduler.TICK,
+                    PentairPollScheduler.TICK, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** must be called synchronized on registry */
+    private void stopTickingIfIdle() {
+        if (registry.getPumps().isEmpty() && keepalives.isEmpty() && tickjob != null) {
+            tickjob.cancel(false);
+            tickjob = null;
+        }
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+
+        pumppoller.tick(now);
+        keepalives.tick(now);
+    }
+
+    /**
+     * Updates the routing table when a child handler's Pentair bus id changes
+     *
+     * @param handler child handler
+     * @param oldid id the handler was registered under, -1 if none
+     * @param newid id to register the handler under, -1 to only remove it
+     */
+    public void updateRoute(PentairBaseThingHandler handler, int oldid, int newid) {
+        if (oldid >= 0 && oldid < 256) {
+            routes.compareAndSet(oldid, handler, null);
+        }
+
+        if (newid >= 0 && newid < 256) {
+            PentairBaseThingHandler previous = routes.getAndSet(newid, handler);
+            if (previous != null && previous != handler) {
+                logger.warn("Pentair ID {} is used by both {} and {}", newid, previous.getThing().getUID(),
+                        handler.getThing().getUID());
+            }
+        }
+    }
+
+    /**
+     * Helper function to find the handler of a Thing assigned to this bridge with a specific pentair bus id.
+     *
+     * @param id Pentair bus id
+     * @return handler, null if id is not found.
+     */
+    public PentairBaseThingHandler findHandler(int id) {
+        return routes.get(id & 0xFF);
+    }
+
+    /**
+     * Helper function to find a Thing assigned to this bridge with a specific pentair bus id.
+     *
+     * @param id Pentair bus id
+     * @return Thing object. null if id is not found.
+     */
+    public Thing findThing(int id) {
+        PentairBaseThingHandler handler = findHandler(id);
+
+        return (handler == null) ? null : handler.getThing();
+    }
+
+    /**
+     * Fills the read buffer with the next chunk of bytes from the transport, blocking until at least one byte is
+     * available. The default implementation reads in bulk from the reader input stream. Subclasses with a different
+     * transport can override this.
+     *
+     * @param buf buffer to fill, positioned for writing
+     * @return number of bytes read, or -1 if the end of the stream has been reached
      * @throws IOException
      */
-    private int getByte(ParserState s) throws EOBException, IOException {
-        int c = 0;
+    protected int fillBuffer(ByteBuffer buf) throws IOException {
+        BufferedInputStream in = reader;
 
-        c = reader.read();
-        if (c == -1) {
-            // EOBException is thrown if no more bytes in buffer. This exception is used to exit the parser when full
-            // packet is not in buffer
-            throw new EOBException();
+        if (in == null) { // closed by disconnect
+            return -1;
         }
 
-        return c;
+        return fillBuffer(in, buf);
     }
 
     /**
-     * Gets a specific number of bytes from reader input stream
+     * Fills the read buffer with one bulk read from an input stream
      *
-     * @param buf byte buffer to store bytes
-     * @param start starting index to store bytes
-     * @param n number of bytes to read
-     * @return number of bytes read
-     * @throws EOBException
+     * @param in stream to read from
+     * @param buf buffer to fill, positioned for writing
+     * @return number of bytes read, or -1 if the end of the stream has been reached
      * @throws IOException
      */
-    private int getBytes(byte[] buf, int start, int n) throws EOBException, IOException {
-        int i;
-        int c;
+    protected int fillBuffer(InputStream in, ByteBuffer buf) throws IOException {
+        int n = in.read(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+        if (n > 0) {
+            buf.position(buf.position() + n);
+        }
 
-        for (i = 0; i < n; i++) {
-            c = reader.read();
-            if (c == -1) {
-                // EOBException is thrown if no more bytes in buffer. This exception is used to exit the parser when
-                // full packet is not in buffer
-                throw new EOBException();
-            }
+        return n;
+    }
+
+    /**
+     * Writes bytes to the transport. The default implementation writes to the writer output stream. Subclasses with a
+     * different transport can override this.
+     *
+     * @param buf bytes to write
+     * @param len number of bytes to write
+     * @throws IOException
+     */
+    protected void write(byte[] buf, int len) throws IOException {
+        writer.write(buf, 0, len);
+        writer.flush();
+    }
+
+    /**
+     * Indicates whether the transport is currently able to accept writes
+     *
+     * @return true if {@link #write} can be called
+     */
+    protected boolean isWritable() {
+        return writer != null;
+    }
 
-            buf[start + i] = (byte) c;
+    /**
+     * Pushes a chunk of received bytes in the read buffer into the decoder. Called by the parser thread, or by
+     * subclasses that are notified of incoming data by the transport instead of using a parser thread.
+     *
+     * @param n number of bytes received
+     */
+    protected void processReceived(int n) {
+        if (!received) {
+            received = true;
+            resetBackoff();
+        }
+
+        long now = System.nanoTime();
+
+        PentairCaptureWriter c = capture;
+        if (c != null) {
+            try {
+                c.write(now, readbuffer.array(), readbuffer.arrayOffset() + readbuffer.position(),
+                        readbuffer.remaining());
+            } catch (IOException e) {
+                logger.warn("Error writing capture file, capture stopped: {}", e.getMessage());
+                stopCapture();
+            }
         }
 
-        return i;
+        monitor.onReceive(now, n);
+        metrics.onBytesRead(n);
+        decoder.decode(readbuffer, now);
     }
 
     /**
-     * Implements the thread to read and parse the input stream. Once a packet can be indentified, it locates the
-     * representive sending Thing and dispositions the packet so it can be further processed.
+     * Implements the thread to read the input stream. Bytes are read in bulk and pushed into the
+     * {@link PentairFrameDecoder}, which calls back into the bridge for every complete packet so it can be
+     * dispositioned to the representative sending Thing.
      *
      * @author Jeff James - initial implementation
      *
@@ -256,213 +841,353 @@ public abstract class PentairBaseBridgeHandler extends BaseBridgeHandler {
         @Override
         public void run() {
             logger.debug("parser thread started");
-            byte buf[] = new byte[40];
-            int c;
-            int chksum, i, length;
-            Thing thing;
-            PentairBaseThingHandler thinghandler;
 
-            ParserState parserstate = ParserState.WAIT_SOC;
+            decoder.reset();
 
             try {
                 while (!Thread.currentThread().isInterrupted()) {
-                    c = getByte(parserstate);
-
-                    switch (parserstate) {
-                        case WAIT_SOC:
-                            if (c == 0xFF) { // for CMD_PENTAIR, we need at lease one 0xFF
-                                do {
-                                    c = getByte(parserstate);
-                                } while (c == 0xFF); // consume all 0xFF
-
-                                if (c == 0x00) {
-                                    parserstate = ParserState.CMD_PENTAIR;
-                                }
-                            }
-
-                            if (c == 0x10) {
-                                parserstate = ParserState.CMD_INTELLICHLOR;
-                            }
-                            break;
-                        case CMD_PENTAIR:
-                            parserstate = ParserState.WAIT_SOC; // any break will go back to WAIT_SOC
-
-                            if (c != 0xFF) {
-                                logger.debug("FF00 !FF");
-                                break;
-                            }
-
-                            if (getBytes(buf, 0, 6) != 6) { // read enough to get the length
-                                logger.debug("Unable to read 6 bytes");
-
-                                break;
-                            }
-                            if (buf[0] != (byte) 0xA5) {
-                                logger.debug("FF00FF !A5");
-                                break;
-                            }
-
-                            length = buf[5];
-                            if (length == 0) {
-                                logger.debug("Command length of 0");
-                            }
-                            if (length > 34) {
-                                logger.debug("Received packet longer than 34 bytes: {}", length);
-                                break;
-                            }
-                            if (getBytes(buf, 6, length) != length) { // read remaining packet
-                                break;
-                            }
-
-                            chksum = 0;
-                            for (i = 0; i < length + 6; i++) {
-                                chksum += buf[i] & 0xFF;
-                            }
-
-                            c = getByte(parserstate) << 8;
-                            c += getByte(parserstate);
-
-                            if (c != chksum) {
-                                logger.debug("Checksum error: {}", PentairPacket.bytesToHex(buf, length + 6));
-                                break;
-                            }
-
-                            PentairPacket p = new PentairPacket(buf);
-
-                            thing = findThing(p.getSource());
-                            if (thing == null) {
-                                if ((p.getSource() >> 4) == 0x02) { // control panels are 0x2*, don't treat as an
-                                                                    // unregistered device
-                                    logger.debug("Command from control panel device ({}): {}", p.getSource(), p);
-                                } else if (!unregistered.contains(p.getSource())) { // if not yet seen, print out log
-                                                                                    // message once
-                                    logger.info("Command from unregistered device ({}): {}", p.getSource(), p);
-                                    unregistered.add(p.getSource());
-                                } else {
-                                    logger.debug("Command from unregistered device ({}): {}", p.getSource(), p);
-                                }
-                                break;
-                            }
-
-                            thinghandler = (PentairBaseThingHandler) thing.getHandler();
-                            if (thinghandler == null) {
-                                logger.debug("Thing handler = null");
-                                break;
-                            }
-
-                            logger.trace("Received pentair command: {}", p);
-
-                            thinghandler.processPacketFrom(p);
-
-                            break;
-                        case CMD_INTELLICHLOR:
-                            parserstate = ParserState.WAIT_SOC;
-
-                            buf[0] = 0x10; // 0x10 is included in checksum
-                            if (c != (byte) 0x02) {
-                                break;
-                            }
-
-                            buf[1] = 0x2;
-                            length = 3;
-                            // assume 3 byte command, plus 1 checksum, plus 0x10, 0x03
-                            if (getBytes(buf, 2, 6) != 6) {
-                                break;
-                            }
-
-                            // Check to see if this is a 3 or 4 byte command
-                            if ((buf[6] != (byte) 0x10 || buf[7] != (byte) 0x03)) {
-                                length = 4;
-
-                                buf[8] = (byte) getByte(parserstate);
-                                if ((buf[7] != (byte) 0x10) && (buf[8] != (byte) 0x03)) {
-                                    logger.debug("Invalid Intellichlor command: {}",
-                                            PentairPacket.bytesToHex(buf, length + 6));
-                                    break; // invalid command
-                                }
-                            }
-
-                            chksum = 0;
-                            for (i = 0; i < length + 2; i++) {
-                                chksum += buf[i] & 0xFF;
-                            }
-
-                            c = buf[length + 2] & 0xFF;
-                            if (c != (chksum & 0xFF)) { // make sure it matches chksum
-                                logger.debug("Invalid Intellichlor checksum: {}",
-                                        PentairPacket.bytesToHex(buf, length + 6));
-                                break;
-                            }
-
-                            PentairPacketIntellichlor pic = new PentairPacketIntellichlor(buf, length);
-
-                            thing = findThing(0);
-
-                            if (thing == null) {
-                                if (!unregistered.contains(0)) { // if not yet seen, print out log message
-                                    logger.info("Command from unregistered Intelliflow: {}", pic);
-                                    unregistered.add(0);
-                                } else {
-                                    logger.trace("Command from unregistered Intelliflow: {}", pic);
-                                }
-
-                                break;
-                            }
-
-                            thinghandler = (PentairBaseThingHandler) thing.getHandler();
-                            if (thinghandler == null) {
-                                logger.debug("Thing handler = null");
-                                break;
-                            }
-
-                            thinghandler.processPacketFrom(pic);
-
-                            break;
+                    readbuffer.clear();
+                    int n = fillBuffer(readbuffer);
+                    readbuffer.flip();
+
+                    if (n == -1) {
+                        logger.debug("End of stream reached");
+                        if (!Thread.currentThread().isInterrupted()) {
+                            connectionLost("end of stream");
+                        }
+                        break;
                     }
+
+                    processReceived(n);
                 }
             } catch (IOException e) {
                 logger.trace("I/O error while reading from stream: {}", e.getMessage());
-                _disconnect();
-                updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR);
-            } catch (EOBException e) {
-                logger.trace("EOB Exception: {}", e.getMessage());
-                // EOB Exception is used to exit the parser loop if full message is not in buffer.
+                if (!Thread.currentThread().isInterrupted()) { // interrupted means disconnect is already in progress
+                    connectionLost(e.getMessage());
+                }
             }
 
             logger.debug("msg reader thread exited");
         }
     }
 
+    @Override
+    public void onPentairPacket(PentairPacket p) {
+        monitor.onFrame(decoder.getFrameStart(), p);
+        metrics.onFrame(p.getSource(), p.getAction());
+
+        int source = p.getSource() & 0xFF;
+        if (!seen.get(source)) {
+            deviceSeen(source);
+        }
+        enqueue(p);
+    }
+
+    @Override
+    public void onIntellichlorPacket(PentairPacketIntellichlor pic) {
+        metrics.onIntellichlorFrame();
+
+        if (!seen.get(PentairDiscoveryService.INTELLICHLOR_ADDRESS)) {
+            deviceSeen(PentairDiscoveryService.INTELLICHLOR_ADDRESS);
+        }
+        enqueue(pic);
+    }
+
+    @Override
+    public void onChecksumError() {
+        monitor.onChecksumError(System.nanoTime());
+        metrics.onChecksumError();
+    }
+
+    @Override
+    public void onResync() {
+        metrics.onResync();
+    }
+
+    /**
+     * Called on the parser thread for the first frame from an address, reports the device to discovery off the parser
+     * thread
+     *
+     * @param address Pentair bus address, or {@link PentairDiscoveryService#INTELLICHLOR_ADDRESS}
+     */
+    private void deviceSeen(int address) {
+        seen.set(address);
+
+        PentairDiscoveryService ds = discoveryservice;
+        if (ds != null && PentairDiscoveryService.isDiscoverable(address)) {
+            scheduler.execute(() -> ds.deviceDiscovered(address));
+        }
+    }
+
+    /**
+     * Queues a decoded packet for the dispatch thread. Called on the parser thread, so this never blocks.
+     *
+     * @param p packet to queue
+     */
+    private void enqueue(PentairPacket p) {
+        PentairPacket displaced = ring.offer(p);
+
+        if (displaced != null) {
+            logger.trace("Dispatch ring full, discarding: {}", displaced);
+            decoder.release(displaced);
+        }
+    }
+
     /**
-     * Method to write a package on the Pentair bus. Will add preamble and checksum to bytes written
+     * Implements the thread which takes decoded packets from the dispatch ring and dispositions them to the Things, so
+     * a slow handler does not stall reading of the bus.
+     *
+     * @author Jeff James - initial implementation
+     *
+     */
+    class Dispatcher implements Runnable {
+        @Override
+        public void run() {
+            logger.debug("dispatch thread started");
+
+            while (!Thread.currentThread().isInterrupted()) {
+                PentairPacket p;
+
+                try {
+                    p = ring.take();
+                } catch (InterruptedException e) {
+                    break;
+                }
+
+                try {
+                    if (p instanceof PentairPacketIntellichlor) {
+                        dispatchIntellichlorPacket((PentairPacketIntellichlor) p);
+                    } else {
+                        dispatchPacket(p);
+                    }
+                    metrics.getDispatchLatency().record(System.nanoTime() - p.getTimestamp());
+                } catch (RuntimeException e) {
+                    logger.warn("Error processing packet {}", p, e);
+                } finally {
+                    decoder.release(p);
+                }
+            }
+
+            logger.debug("dispatch thread exited");
+        }
+    }
+
+    /**
+     * Dispositions a decoded packet to the Thing representing its source. The packet is only valid for the duration of
+     * the call, handlers must copy anything they keep.
+     *
+     * @param p packet to dispatch
+     */
+    private void dispatchPacket(PentairPacket p) {
+        int source = p.getSource() & 0xFF;
+        int dest = p.getDest() & 0xFF;
+
+        // commands of another master (e.g. the controller) to a pump, so the pump can follow them
+        if ((dest >> 4) == 0x06 && source != id && source != dest) {
+            PentairBaseThingHandler pump = routes.get(dest);
+            if (pump instanceof PentairIntelliFloHandler) {
+                ((PentairIntelliFloHandler) pump).processPacketTo(p);
+            }
+        }
+
+        PentairBaseThingHandler thinghandler = routes.get(source);
+
+        if (thinghandler == null) {
+            metrics.onUnregistered();
+
+            if ((source >> 4) == 0x02) { // control panels are 0x2*, don't treat as an unregistered device
+                logger.debug("Command from control panel device ({}): {}", source, p);
+            } else if (!unregistered.get(source)) { // if not yet seen, print out log message once
+                logger.info("Command from unregistered device ({}): {}", source, p);
+                synchronized (unregistered) {
+                    unregistered.set(source);
+                }
+            } else {
+                logger.debug("Command from unregistered device ({}): {}", source, p);
+            }
+            return;
+        }
+
+        logger.trace("Received pentair command: {}", p);
+
+        thinghandler.processPacketFrom(p);
+    }
+
+    /**
+     * Dispositions a decoded Intellichlor packet to the Intellichlor Thing. The packet is only valid for the duration of
+     * the call, handlers must copy anything they keep.
+     *
+     * @param pic packet to dispatch
+     */
+    private void dispatchIntellichlorPacket(PentairPacketIntellichlor pic) {
+        PentairBaseThingHandler thinghandler = routes.get(0);
+
+        if (thinghandler == null) {
+            metrics.onUnregistered();
+
+            if (!unregistered.get(0)) { // if not yet seen, print out log message
+                logger.info("Command from unregistered Intelliflow: {}", pic);
+                synchronized (unregistered) {
+                    unregistered.set(0);
+                }
+            } else {
+                logger.trace("Command from unregistered Intelliflow: {}", pic);
+            }
+
+            return;
+        }
+
+        thinghandler.processPacketFrom(pic);
+    }
+
+    /**
+     * Method to write a package on the Pentair bus. Will add preamble and checksum to bytes written. The packet is
+     * queued and written by the writer thread once the bus is idle, so this does not block.
      *
      * @param p {@link PentairPacket} to write
      */
     public void writePacket(PentairPacket p) {
-        try { // FF 00 FF A5 00 60 10 07 00 01 1C
-            byte[] preamble = { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0x00, (byte) 0xFF };
-            byte[] buf = new byte[5 + p.getLength() + 8]; // 5 is preamble, 8 is 6 bytes for header and 2 for checksum
+        writePacket(p, null);
+    }
 
-            if (writer == null) {
-                return;
+    /**
+     * Queues a packet like {@link #writePacket(PentairPacket)}, with a callback once the packet has left the queue.
+     * Response timeouts are started from the callback, so the time the packet is held back for an idle gap on the bus
+     * does not count against the device.
+     *
+     * @param p {@link PentairPacket} to write
+     * @param onwritten called once the packet has been written or dropped, null if not needed
+     */
+    public void writePacket(PentairPacket p, Runnable onwritten) { // FF 00 FF A5 00 60 10 07 00 01 1C
+        byte[] preamble = { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0x00, (byte) 0xFF };
+        byte[] buf = new byte[5 + p.getLength() + 8]; // 5 is preamble, 8 is 6 bytes for header and 2 for checksum
+
+        if (!isWritable()) {
+            if (onwritten != null) {
+                onwritten.run();
+            }
+            return;
+        }
+        p.setSource(id);
+
+        System.arraycopy(preamble, 0, buf, 0, 5);
+        System.arraycopy(p.buf, 0, buf, 5, p.getLength() + 6);
+        int checksum = p.calcChecksum();
+
+        buf[p.getLength() + 11] = (byte) ((checksum >> 8) & 0xFF);
+        buf[p.getLength() + 12] = (byte) (checksum & 0xFF);
+
+        QueuedFrame frame = new QueuedFrame(buf, onwritten);
+        if (!writequeue.offer(frame)) {
+            logger.debug("Write queue full, dropping packet: {}", p);
+            frame.done();
+        }
+    }
+
+    /**
+     * Queues an Intellichlor frame to be written on the bus, like {@link #writePacket}
+     *
+     * @param frame complete frame, including 10 02, checksum and 10 03
+     */
+    public void writeIntellichlor(byte[] frame) {
+        if (!isWritable()) {
+            return;
+        }
+
+        if (!writequeue.offer(new QueuedFrame(frame, null))) {
+            logger.debug("Write queue full, dropping Intellichlor frame: {}", PentairPacket.bytesToHex(frame));
+        }
+    }
+
+    /**
+     * Frame waiting in the write queue, including preamble and checksum
+     */
+    private static class QueuedFrame {
+        final byte[] buf;
+        /** called once the frame has been written or dropped, may be null */
+        final Runnable onwritten;
+
+        QueuedFrame(byte[] buf, Runnable onwritten) {
+            this.buf = buf;
+            this.onwritten = onwritten;
+        }
+
+        void done() {
+            if (onwritten != null) {
+                onwritten.run();
             }
-            p.setSource(id);
+        }
+    }
+
+    /**
+     * Implements the thread which writes queued frames. A frame is held until {@link PentairBusMonitor} predicts an
+     * idle gap on the bus, but no longer than {@link #MAX_HOLD}, so a busy bus can not starve writes.
+     *
+     * @author Jeff James - initial implementation
+     *
+     */
+    class Writer implements Runnable {
+        @Override
+        public void run() {
+            logger.debug("writer thread started");
 
-            System.arraycopy(preamble, 0, buf, 0, 5);
-            System.arraycopy(p.buf, 0, buf, 5, p.getLength() + 6);
-            int checksum = p.calcChecksum();
+            while (!Thread.currentThread().isInterrupted()) {
+                QueuedFrame frame;
 
-            buf[p.getLength() + 11] = (byte) ((checksum >> 8) & 0xFF);
-            buf[p.getLength() + 12] = (byte) (checksum & 0xFF);
+                try {
+                    frame = writequeue.take();
+                } catch (InterruptedException e) {
+                    break;
+                }
 
-            logger.debug("Writing packet: {}", PentairPacket.bytesToHex(buf));
+                byte[] buf = frame.buf;
 
-            writer.write(buf, 0, 5 + p.getLength() + 8);
-            writer.flush();
-        } catch (IOException e) {
-            logger.trace("I/O error while writing stream: {}", e);
-            _disconnect();
-            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR, e.getMessage());
+                long queued = System.nanoTime();
+                long now = queued;
+                long wait;
+
+                while ((wait = monitor.getTransmitDelay(now, buf.length)) > 0 && now - queued < MAX_HOLD) {
+                    LockSupport.parkNanos(wait);
+                    if (Thread.currentThread().isInterrupted()) {
+                        logger.debug("writer thread exited");
+                        return;
+                    }
+                    now = System.nanoTime();
+                }
+
+                if (!isWritable()) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Not connected, dropping packet: {}", PentairPacket.bytesToHex(buf));
+                    }
+                    frame.done();
+                    continue;
+                }
+
+                try {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Writing packet: {}", PentairPacket.bytesToHex(buf));
+                    }
+
+                    write(buf, buf.length);
+                    now = System.nanoTime();
+                    monitor.onTransmit(now, buf.length);
+                    metrics.onWrite();
+                    // recorded like received frames, Pentair frames without preamble and checksum
+                    if (buf[0] == (byte) 0x10) {
+                        recorder.record(PentairFlightRecorder.Kind.TX, now, buf, 0, buf.length);
+                    } else {
+                        recorder.record(PentairFlightRecorder.Kind.TX, now, buf, 5, buf.length - 7);
+                    }
+                } catch (IOException e) {
+                    metrics.onWriteError();
+                    logger.trace("I/O error while writing stream: {}", e);
+                    connectionLost(e.getMessage());
+                }
+
+                frame.done();
+            }
+
+            logger.debug("writer thread exited");
         }
     }
 }
@@ -22,9 +22,15 @@ import org.openhab.binding.pentair.internal.PentairPacket;
 public abstract class PentairBaseThingHandler extends BaseThingHandler {
     /** ID of Thing on Pentair bus */
     protected int id;
+    /** handler of the bridge, cached so it doesn't have to be resolved on every write. Set by the bridge. */
+    private volatile PentairBaseBridgeHandler bridgehandler;
+    /** UIDs of the channels, so channel updates do not build them */
+    protected final PentairChannelTable channels;
 
     public PentairBaseThingHandler(Thing thing) {
         super(thing);
+
+        channels = new PentairChannelTable(thing.getUID());
     }
 
     /**
@@ -36,29 +42,97 @@ public abstract class PentairBaseThingHandler extends BaseThingHandler {
         return id;
     }
 
-    public void writePacket(byte[] packet) {
-        PentairPacket p = new PentairPacket(packet);
-        Bridge bridge = this.getBridge();
-        if (bridge == null) {
-            return;
+    /**
+     * Sets Pentair bus ID of Thing, updating the bridge's routing table if the Thing is already registered
+     *
+     * @param id new id
+     */
+    protected void setPentairID(int id) {
+        int oldid = this.id;
+        this.id = id;
+
+        PentairBaseBridgeHandler bbh = bridgehandler;
+        if (bbh != null && oldid != id) {
+            bbh.updateRoute(this, oldid, id);
+        }
+    }
+
+    /**
+     * Adds this Thing to the bridge's routing table under its current id. The bridge only learns about a child through
+     * {@link PentairBaseBridgeHandler#childHandlerInitialized} once the child has left INITIALIZING, which the child
+     * handlers only do on their first frame, so they have to register themselves to receive that frame.
+     *
+     * @param bbh bridge handler
+     */
+    protected void registerRoute(PentairBaseBridgeHandler bbh) {
+        bbh.updateRoute(this, -1, id);
+    }
+
+    /**
+     * Removes this Thing from the bridge's routing table, if it is registered
+     */
+    protected void unregisterRoute() {
+        PentairBaseBridgeHandler bbh = bridgehandler;
+
+        if (bbh != null) {
+            bbh.updateRoute(this, id, -1);
         }
-        PentairBaseBridgeHandler bbh = (PentairBaseBridgeHandler) bridge.getHandler();
+    }
+
+    /**
+     * Sets cached bridge handler, called by the bridge when the child handler is initialized or disposed
+     *
+     * @param bridgehandler bridge handler, null to clear
+     */
+    void setBridgeHandler(PentairBaseBridgeHandler bridgehandler) {
+        this.bridgehandler = bridgehandler;
+    }
+
+    /**
+     * Gets the handler of the bridge, resolving and caching it on first use
+     *
+     * @return bridge handler, null if there is no bridge or it has no handler
+     */
+    public PentairBaseBridgeHandler getBridgeHandler() {
+        PentairBaseBridgeHandler bbh = bridgehandler;
+
         if (bbh == null) {
-            return;
+            Bridge bridge = this.getBridge();
+            if (bridge == null) {
+                return null;
+            }
+            bbh = (PentairBaseBridgeHandler) bridge.getHandler();
+            bridgehandler = bbh;
         }
 
-        bbh.writePacket(p);
+        return bbh;
     }
 
-    public void delay300() {
-        try {
-            Thread.sleep(1000);
-        } catch (InterruptedException e) {
+    public void writePacket(byte[] packet) {
+        writePacket(packet, null);
+    }
+
+    /**
+     * Queues a packet for writing on the bus, see {@link PentairBaseBridgeHandler#writePacket(PentairPacket, Runnable)}
+     *
+     * @param packet packet, starting with A5 and without checksum
+     * @param onwritten called once the packet has been written or dropped, null if not needed
+     */
+    public void writePacket(byte[] packet, Runnable onwritten) {
+        PentairBaseBridgeHandler bbh = getBridgeHandler();
+        if (bbh == null) {
+            if (onwritten != null) {
+                onwritten.run();
+            }
+            return;
         }
+
+        bbh.writePacket(new PentairPacket(packet), onwritten);
     }
 
     /**
-     * Abstract function to be implemented by Thing to dispose/parse a received packet
+     * Abstract function to be implemented by Thing to dispose/parse a received packet. The packet buffer is reused once
+     * this call returns, so anything that needs to be kept must be copied.
      *
      * @param p
      */
@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal.handler;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.eclipse.smarthome.core.thing.ThingUID;
+
+/**
+ * Table of the {@link ChannelUID}s of a Thing, looked up by group and channel id. Each UID is created on first use and
+ * then reused, so updating a channel needs neither string concatenation nor a new UID.
+ *
+ * @author Jeff James - initial contribution
+ *
+ */
+public class PentairChannelTable {
+    /** key used for channels outside of a group */
+    private static final String NO_GROUP = "";
+
+    private final ThingUID thinguid;
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, ChannelUID>> groups = new ConcurrentHashMap<>();
+
+    public PentairChannelTable(ThingUID thinguid) {
+        this.thinguid = thinguid;
+    }
+
+    /**
+     * Gets UID of a channel in a group
+     *
+     * @param group group id
+     * @param channel channel id within the group
+     * @return channel UID
+     */
+    public ChannelUID get(String group, String channel) {
+        ConcurrentHashMap<String, ChannelUID> uids = groups.get(group);
+        if (uids == null) {
+            uids = groups.computeIfAbsent(group, g -> new ConcurrentHashMap<>());
+        }
+
+        ChannelUID uid = uids.get(channel);
+        if (uid == null) {
+            uid = uids.computeIfAbsent(channel, c -> (group == NO_GROUP) ? new ChannelUID(thinguid, c)
+                    : new ChannelUID(thinguid, group, c));
+        }
+
+        return uid;
+    }
+
+    /**
+     * Gets UID of a channel outside of a group
+     *
+     * @param channel channel id
+     * @return channel UID
+     */
+    public ChannelUID get(String channel) {
+        return get(NO_GROUP, channel);
+    }
+}
@@ -18,7 +18,6 @@ import java.util.concurrent.TimeUnit;
 import org.eclipse.smarthome.core.library.types.DecimalType;
 import org.eclipse.smarthome.core.library.types.OnOffType;
 import org.eclipse.smarthome.core.library.types.StringType;
-import org.eclipse.smarthome.core.thing.Bridge;
 import org.eclipse.smarthome.core.thing.ChannelUID;
 import org.eclipse.smarthome.core.thing.Thing;
 import org.eclipse.smarthome.core.thing.ThingStatus;
@@ -26,12 +25,16 @@ import org.eclipse.smarthome.core.thing.ThingStatusDetail;
 import org.eclipse.smarthome.core.thing.ThingStatusInfo;
 import org.eclipse.smarthome.core.types.Command;
 import org.eclipse.smarthome.core.types.RefreshType;
+import org.eclipse.smarthome.core.types.State;
 import org.eclipse.smarthome.core.types.UnDefType;
+import org.openhab.binding.pentair.internal.PentairAdaptiveTimeout;
 import org.openhab.binding.pentair.internal.PentairControllerConstants;
 import org.openhab.binding.pentair.internal.PentairPacket;
 import org.openhab.binding.pentair.internal.PentairPacketControllerSchedule;
 import org.openhab.binding.pentair.internal.PentairPacketHeatSetPoint;
 import org.openhab.binding.pentair.internal.PentairPacketStatus;
+import org.openhab.binding.pentair.internal.PentairQueryPipeline;
+import org.openhab.binding.pentair.internal.PentairStates;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,9 +50,15 @@ public class PentairControllerHandler extends PentairBaseThingHandler {
     protected static final int NUMCIRCUITS = 8;
     protected static final int NUMSCHEDULES = 9;
 
-    // only one controller can be online at a time, used to validate only one is online & to access status
-    public static PentairControllerHandler onlineController;
-    public boolean servicemode = false;
+    /** maximum number of configuration queries in flight during warm-up */
+    protected static final int WARMUP_WINDOW = 2;
+    /** response timeouts in ms */
+    private static final long INITIAL_TIMEOUT = 1000;
+    private static final long MIN_TIMEOUT = 100;
+    private static final long MAX_TIMEOUT = 3000;
+
+    /** set while the controller is in service mode, read by pumps on other threads */
+    private volatile boolean servicemode = false;
 
     private final Logger logger = LoggerFactory.getLogger(PentairControllerHandler.class);
     protected ScheduledFuture<?> syncTimeJob;
@@ -59,15 +68,26 @@ public class PentairControllerHandler extends PentairBaseThingHandler {
                                                  // status command
 
     /**
-     * current/last status packet recieved, used to compare new packet values to determine if status needs to be updated
+     * current/last status packet recieved, used to compare new packet values to determine if status needs to be updated.
+     * p29new is filled from each incoming packet; both packets own their buffers and are swapped rather than
+     * reallocated for every status packet.
      */
     protected PentairPacketStatus p29cur = new PentairPacketStatus();
-    protected PentairPacketStatus p29old;
+    protected PentairPacketStatus p29new = new PentairPacketStatus();
+    /** true once a status packet has been stored in p29cur */
+    private volatile boolean p29valid = false;
     /** current/last heat set point packet, used to determine if status in framework should be updated */
     protected PentairPacketHeatSetPoint phspcur = new PentairPacketHeatSetPoint();
 
     protected PentairPacketControllerSchedule[] schedules = new PentairPacketControllerSchedule[NUMSCHEDULES];
 
+    /** response timeout of the controller, learned from the time it takes to answer queries */
+    protected final PentairAdaptiveTimeout responsetimeout = new PentairAdaptiveTimeout(INITIAL_TIMEOUT, MIN_TIMEOUT,
+            MAX_TIMEOUT);
+    /** queries the controller configuration once the controller is online */
+    protected final PentairQueryPipeline warmup = new PentairQueryPipeline(scheduler, this::writePacket,
+            responsetimeout, WARMUP_WINDOW);
+
     public PentairControllerHandler(Thing thing) {
         super(thing);
     }
@@ -84,6 +104,7 @@ public class PentairControllerHandler extends PentairBaseThingHandler {
         logger.debug("Thing {} disposed.", getThing().getUID());
 
         goOffline(ThingStatusDetail.NONE);
+        unregisterRoute();
     }
 
     @Override
@@ -100,36 +121,50 @@ public class PentairControllerHandler extends PentairBaseThingHandler {
     public void goOnline() {
         logger.debug("Thing {} goOnline.", getThing().getUID());
 
-        if (onlineController != null) {
-            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR,
-                    "Another Controller controller is already configured.");
-        }
-
-        id = ((BigDecimal) getConfig().get("id")).intValue();
+        setPentairID(((BigDecimal) getConfig().get("id")).intValue());
 
         // make sure bridge exists and is online
-        Bridge bridge = this.getBridge();
-        if (bridge == null) {
-            return;
-        }
-        PentairBaseBridgeHandler bh = (PentairBaseBridgeHandler) bridge.getHandler();
+        PentairBaseBridgeHandler bh = getBridgeHandler();
         if (bh == null) {
             logger.debug("Bridge does not exist");
             return;
         }
 
+        registerRoute(bh);
+
         ThingStatus ts = bh.getThing().getStatus();
         if (!ts.equals(ThingStatus.ONLINE)) {
             logger.debug("Bridge is not online");
             return;
         }
 
+        PentairControllerHandler other = bh.getRegistry().getController();
+        if (other != null && other != this) {
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR,
+                    "Another controller is already configured on this bridge.");
+            return;
+        }
+
+        responsetimeout.setHistogram(bh.getMetrics().getAckLatency());
+
+        p29valid = false; // publish all channels with the first status
         waitStatusForOnline = true; // Wait for first status response to go online
     }
 
     public void finishOnline() {
+        PentairBaseBridgeHandler bh = getBridgeHandler();
+        if (bh == null) {
+            return;
+        }
+
+        // only one controller can be online on a bus
+        if (!bh.getRegistry().setController(this)) {
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR,
+                    "Another controller is already configured on this bridge.");
+            return;
+        }
+
         // update status to ONLINE even though we haven't queried all info
-        onlineController = this;
         updateStatus(ThingStatus.ONLINE);
 
         // setup timer to sync time
@@ -152,30 +187,19 @@ public class PentairControllerHandler extends PentairBaseThingHandler {
         // to prevent collision with main thread queries on initial startup
         syncTimeJob = scheduler.scheduleAtFixedRate(runnable, 3, 24 * 60 * 60, TimeUnit.MINUTES);
 
-        Runnable queryinfo = new Runnable() {
-            @Override
-            public void run() {
-                int i;
+        // query configuration, each query is sent as soon as a response to an earlier one has been received
+        logger.debug("Querying controller configuration");
 
-                getSWVersion();
-                delay300();
+        warmup.add(swVersionCommand(), 252, PentairQueryPipeline.ANY);
+        warmup.add(heatCommand(), 8, PentairQueryPipeline.ANY);
 
-                getHeat();
-                delay300();
-
-                for (i = 1; i <= NUMCIRCUITS; i++) {
-                    getCircuitNameFunction(i);
-                    delay300();
-                }
+        for (int i = 1; i <= NUMCIRCUITS; i++) {
+            warmup.add(circuitNameFunctionCommand(i), 11, i);
+        }
 
-                for (i = 1; i <= NUMSCHEDULES; i++) {
-                    getSchedule(i);
-                    delay300();
-                }
-            }
-        };
-        Thread thread = new Thread(queryinfo);
-        thread.start();
+        for (int i = 1; i <= NUMSCHEDULES; i++) {
+            warmup.add(scheduleCommand(i), 17, i);
+        }
     }
 
     public void goOffline(ThingStatusDetail detail) {
@@ -185,10 +209,25 @@ public class PentairControllerHandler extends PentairBaseThingHandler {
             syncTimeJob.cancel(true);
         }
 
-        onlineController = null;
+        warmup.cancel();
+
+        PentairBaseBridgeHandler bh = getBridgeHandler();
+        if (bh != null) {
+            bh.getRegistry().clearController(this);
+        }
+
         updateStatus(ThingStatus.OFFLINE, detail);
     }
 
+    /**
+     * Indicates whether the controller is in service mode, in which case it does not control the pumps
+     *
+     * @return true if in service mode
+     */
+    public boolean isServiceMode() {
+        return servicemode;
+    }
+
     public int getCircuitNumber(String name) {
         switch (name) {
             case CONTROLLER_POOLCIRCUIT:
@@ -351,31 +390,37 @@ public class PentairControllerHandler extends PentairBaseThingHandler {
         writePacket(packet);
     }
 
-    public void getCircuitNameFunction(int circuit) {
-        byte[] packet = { (byte) 0xA5, (byte) preambleByte, (byte) id, (byte) 0x00 /* source */, (byte) 0xCB,
+    private byte[] circuitNameFunctionCommand(int circuit) {
+        return new byte[] { (byte) 0xA5, (byte) preambleByte, (byte) id, (byte) 0x00 /* source */, (byte) 0xCB,
                 (byte) 0x01, (byte) circuit };
+    }
 
+    public void getCircuitNameFunction(int circuit) {
         logger.info("getCircuitNameFunction: {}", circuit);
 
-        writePacket(packet);
+        writePacket(circuitNameFunctionCommand(circuit));
     }
 
-    public void getSchedule(int num) {
-        byte[] packet = { (byte) 0xA5, (byte) preambleByte, (byte) id, (byte) 0x00 /* source */, (byte) 0xD1,
+    private byte[] scheduleCommand(int num) {
+        return new byte[] { (byte) 0xA5, (byte) preambleByte, (byte) id, (byte) 0x00 /* source */, (byte) 0xD1,
                 (byte) 0x01, (byte) num };
+    }
 
+    public void getSchedule(int num) {
         logger.info("getSchedule: {}", num);
 
-        writePacket(packet);
+        writePacket(scheduleCommand(num));
     }
 
-    public void getSWVersion() {
-        byte[] packet = { (byte) 0xA5, (byte) preambleByte, (byte) id, (byte) 0x00 /* source */, (byte) 0xD9,
+    private byte[] swVersionCommand() {
+        return new byte[] { (byte) 0xA5, (byte) preambleByte, (byte) id, (byte) 0x00 /* source */, (byte) 0xD9,
                 (byte) 0x01, (byte) 0x00 };
+    }
 
+    public void getSWVersion() {
         logger.info("getSWVersion");
 
-        writePacket(packet);
+        writePacket(swVersionCommand());
     }
 
     /**
@@ -413,13 +458,15 @@ public class PentairControllerHandler extends PentairBaseThingHandler {
         writePacket(packet);
     }
 
-    public void getHeat() { // A5 01 10 20 C8 01 00
-        byte[] packet = { (byte) 0xA5, (byte) preambleByte, (byte) id, (byte) 0x00 /* source */, (byte) 0xC8,
+    private byte[] heatCommand() { // A5 01 10 20 C8 01 00
+        return new byte[] { (byte) 0xA5, (byte) preambleByte, (byte) id, (byte) 0x00 /* source */, (byte) 0xC8,
                 (byte) 0x01, (byte) 0 };
+    }
 
+    public void getHeat() {
         logger.info("Get heat settings");
 
-        writePacket(packet);
+        writePacket(heatCommand());
     }
 
     /**
@@ -449,6 +496,7 @@ public class PentairControllerHandler extends PentairBaseThingHandler {
 
     @Override
     public void processPacketFrom(PentairPacket p) {
+        warmup.onResponse(p);
 
         switch (p.getAction()) {
             case 1: // Ack
@@ -468,37 +516,80 @@ public class PentairControllerHandler extends PentairBaseThingHandler {
                     finishOnline();
                 }
 
-                p29cur = new PentairPacketStatus(p);
-
-                // only update packet of value has changed
-                if (p29cur.equals(p29old)) {
+                // skip decoding if none of the status bytes changed
+                if (p29valid && p29cur.sameStatus(p)) {
                     return;
                 }
-                p29old = p29cur;
-
-                updateChannel(CONTROLLER_POOLCIRCUIT, CONTROLLER_CIRCUITSWITCH, p29cur.pool);
-                updateChannel(CONTROLLER_SPACIRCUIT, CONTROLLER_CIRCUITSWITCH, p29cur.spa);
-                updateChannel(CONTROLLER_AUX1CIRCUIT, CONTROLLER_CIRCUITSWITCH, p29cur.aux1);
-                updateChannel(CONTROLLER_AUX2CIRCUIT, CONTROLLER_CIRCUITSWITCH, p29cur.aux2);
-                updateChannel(CONTROLLER_AUX3CIRCUIT, CONTROLLER_CIRCUITSWITCH, p29cur.aux3);
-                updateChannel(CONTROLLER_AUX4CIRCUIT, CONTROLLER_CIRCUITSWITCH, p29cur.aux4);
-                updateChannel(CONTROLLER_AUX5CIRCUIT, CONTROLLER_CIRCUITSWITCH, p29cur.aux5);
-                updateChannel(CONTROLLER_AUX6CIRCUIT, CONTROLLER_CIRCUITSWITCH, p29cur.aux6);
-                updateChannel(CONTROLLER_AUX7CIRCUIT, CONTROLLER_CIRCUITSWITCH, p29cur.aux7);
-
-                updateState(CONTROLLER_POOLHEAT + "#" + CONTROLLER_TEMPERATURE,
-                        (p29cur.pool) ? new DecimalType(p29cur.pooltemp) : UnDefType.UNDEF);
-                updateState(CONTROLLER_SPAHEAT + "#" + CONTROLLER_TEMPERATURE,
-                        (p29cur.spa) ? new DecimalType(p29cur.spatemp) : UnDefType.UNDEF);
-
-                updateChannel(CONTROLLER_STATUS, CONTROLLER_AIRTEMPERATURE, p29cur.airtemp);
-                updateChannel(CONTROLLER_STATUS, CONTROLLER_SOLARTEMPERATURE, p29cur.solartemp);
-                updateChannel(CONTROLLER_STATUS, CONTROLLER_UOM, (p29cur.uom) ? "CELCIUS" : "FARENHEIT");
-                updateChannel(CONTROLLER_STATUS, CONTROLLER_SERVICEMODE, p29cur.servicemode);
-                servicemode = p29cur.servicemode;
-
-                updateChannel(CONTROLLER_STATUS, CONTROLLER_SOLARON, p29cur.solaron);
-                updateChannel(CONTROLLER_STATUS, CONTROLLER_HEATERON, p29cur.heateron);
+
+                p29new.parsePacket(p);
+
+                PentairPacketStatus p29old = p29cur;
+                p29cur = p29new;
+                p29new = p29old;
+
+                // only publish channels whose value has changed, all of them for the first status
+                boolean all = !p29valid;
+                p29valid = true;
+
+                if (all || p29cur.pool != p29old.pool) {
+                    updateChannel(CONTROLLER_POOLCIRCUIT, CONTROLLER_CIRCUITSWITCH, p29cur.pool);
+                }
+                if (all || p29cur.spa != p29old.spa) {
+                    updateChannel(CONTROLLER_SPACIRCUIT, CONTROLLER_CIRCUITSWITCH, p29cur.spa);
+                }
+                if (all || p29cur.aux1 != p29old.aux1) {
+                    updateChannel(CONTROLLER_AUX1CIRCUIT, CONTROLLER_CIRCUITSWITCH, p29cur.aux1);
+                }
+                if (all || p29cur.aux2 != p29old.aux2) {
+                    updateChannel(CONTROLLER_AUX2CIRCUIT, CONTROLLER_CIRCUITSWITCH, p29cur.aux2);
+                }
+                if (all || p29cur.aux3 != p29old.aux3) {
+                    updateChannel(CONTROLLER_AUX3CIRCUIT, CONTROLLER_CIRCUITSWITCH, p29cur.aux3);
+                }
+                if (all || p29cur.aux4 != p29old.aux4) {
+                    updateChannel(CONTROLLER_AUX4CIRCUIT, CONTROLLER_CIRCUITSWITCH, p29cur.aux4);
+                }
+                if (all || p29cur.aux5 != p29old.aux5) {
+                    updateChannel(CONTROLLER_AUX5CIRCUIT, CONTROLLER_CIRCUITSWITCH, p29cur.aux5);
+                }
+                if (all || p29cur.aux6 != p29old.aux6) {
+                    updateChannel(CONTROLLER_AUX6CIRCUIT, CONTROLLER_CIRCUITSWITCH, p29cur.aux6);
+                }
+                if (all || p29cur.aux7 != p29old.aux7) {
+                    updateChannel(CONTROLLER_AUX7CIRCUIT, CONTROLLER_CIRCUITSWITCH, p29cur.aux7);
+                }
+
+                // temperature of the pool or spa is only known while its circuit is on
+                if (all || p29cur.pool != p29old.pool || p29cur.pooltemp != p29old.pooltemp) {
+                    updateChannel(CONTROLLER_POOLHEAT, CONTROLLER_TEMPERATURE,
+                            (p29cur.pool) ? PentairStates.decimal(p29cur.pooltemp) : UnDefType.UNDEF);
+                }
+                if (all || p29cur.spa != p29old.spa || p29cur.spatemp != p29old.spatemp) {
+                    updateChannel(CONTROLLER_SPAHEAT, CONTROLLER_TEMPERATURE,
+                            (p29cur.spa) ? PentairStates.decimal(p29cur.spatemp) : UnDefType.UNDEF);
+                }
+
+                if (all || p29cur.airtemp != p29old.airtemp) {
+                    updateChannel(CONTROLLER_STATUS, CONTROLLER_AIRTEMPERATURE, p29cur.airtemp);
+                }
+                if (all || p29cur.solartemp != p29old.solartemp) {
+                    updateChannel(CONTROLLER_STATUS, CONTROLLER_SOLARTEMPERATURE, p29cur.solartemp);
+                }
+                if (all || p29cur.uom != p29old.uom) {
+                    updateChannel(CONTROLLER_STATUS, CONTROLLER_UOM,
+                            (p29cur.uom) ? PentairStates.CELSIUS : PentairStates.FAHRENHEIT);
+                }
+                if (all || p29cur.servicemode != p29old.servicemode) {
+                    updateChannel(CONTROLLER_STATUS, CONTROLLER_SERVICEMODE, p29cur.servicemode);
+                    servicemode = p29cur.servicemode;
+                }
+
+                if (all || p29cur.solaron != p29old.solaron) {
+                    updateChannel(CONTROLLER_STATUS, CONTROLLER_SOLARON, p29cur.solaron);
+                }
+                if (all || p29cur.heateron != p29old.heateron) {
+                    updateChannel(CONTROLLER_STATUS, CONTROLLER_HEATERON, p29cur.heateron);
+                }
 
                 break;
             case 4: // Pump control panel on/off
@@ -538,9 +629,9 @@ public class PentairControllerHandler extends PentairBaseThingHandler {
                 updateChannel(CONTROLLER_SPAHEAT, CONTROLLER_SETPOINT, phspcur.spasetpoint);
 
                 updateChannel(CONTROLLER_POOLHEAT, CONTROLLER_HEATMODE,
-                        PentairControllerConstants.HEATMODE.get(phspcur.poolheatmode));
+                        PentairStates.of(PentairStates.HEATMODE, phspcur.poolheatmode));
                 updateChannel(CONTROLLER_SPAHEAT, CONTROLLER_HEATMODE,
-                        PentairControllerConstants.HEATMODE.get(phspcur.spaheatmode));
+                        PentairStates.of(PentairStates.HEATMODE, phspcur.spaheatmode));
 
                 logger.debug("Heat set point: {}, {}, {}", p, phspcur.poolsetpoint, phspcur.spasetpoint);
                 break;
@@ -578,7 +669,7 @@ public class PentairControllerHandler extends PentairBaseThingHandler {
 
                 updateChannel(group, CONTROLLER_SCHEDULESTRING, schedulestr);
 
-                updateChannel(group, CONTROLLER_SCHEDULETYPE, ppcs.GetTypeString());
+                updateChannel(group, CONTROLLER_SCHEDULETYPE, PentairStates.of(PentairStates.SCHEDULETYPE, ppcs.type));
                 updateChannel(group, CONTROLLER_SCHEDULECIRCUIT, ppcs.circuit);
                 updateChannel(group, CONTROLLER_SCHEDULEDAYS, ppcs.days);
                 updateChannel(group, CONTROLLER_SCHEDULESTARTHOUR, ppcs.starth);
@@ -591,7 +682,7 @@ public class PentairControllerHandler extends PentairBaseThingHandler {
                         "Controller Schedule - ID: {}, Type: {}, Circuit: {}, Start Time: {}:{}, End Time: {}:{}, Days: {}",
                         ppcs.id, ppcs.type, ppcs.circuit, ppcs.starth, ppcs.startm, ppcs.endh, ppcs.endm, ppcs.days);
 
-                logger.info(schedulestr);
+                logger.debug("Controller Schedule {}: {}", ppcs.id, schedulestr);
                 break;
             case 25: // Intellichlor status
                 logger.debug("Intellichlor status: {}", p);
@@ -618,14 +709,18 @@ public class PentairControllerHandler extends PentairBaseThingHandler {
      * Helper function to update channel.
      */
     public void updateChannel(String group, String channel, boolean value) {
-        updateState(group + "#" + channel, (value) ? OnOffType.ON : OnOffType.OFF);
+        updateState(channels.get(group, channel), PentairStates.onOff(value));
     }
 
     public void updateChannel(String group, String channel, int value) {
-        updateState(group + "#" + channel, new DecimalType(value));
+        updateState(channels.get(group, channel), PentairStates.decimal(value));
     }
 
     public void updateChannel(String group, String channel, String value) {
-        updateState(group + "#" + channel, new StringType(value));
+        updateState(channels.get(group, channel), new StringType(value));
+    }
+
+    public void updateChannel(String group, String channel, State state) {
+        updateState(channels.get(group, channel), state);
     }
 }
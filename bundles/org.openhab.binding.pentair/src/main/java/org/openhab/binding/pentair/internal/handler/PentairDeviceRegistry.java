@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal.handler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Registry of the devices online on the bus of one bridge. Each bridge has its own registry, so several bridges with
+ * their own controller and pumps share no state.
+ *
+ * Readers, e.g. a pump checking whether a controller is in charge of the bus, never block: the controller is held in
+ * an atomic reference and the pumps are published as an immutable snapshot which is replaced on every change. Changes
+ * are rare and synchronized.
+ *
+ * @author Jeff James - initial contribution
+ *
+ */
+public class PentairDeviceRegistry {
+    private final AtomicReference<PentairControllerHandler> controller = new AtomicReference<>();
+    private volatile List<PentairIntelliFloHandler> pumps = Collections.emptyList();
+
+    /**
+     * Registers the online controller. Only one controller can be online on a bus.
+     *
+     * @param handler controller going online
+     * @return true if registered, false if another controller is already online
+     */
+    public boolean setController(PentairControllerHandler handler) {
+        return controller.compareAndSet(null, handler) || controller.get() == handler;
+    }
+
+    /**
+     * Unregisters the controller, if it is the one registered
+     *
+     * @param handler controller going offline
+     */
+    public void clearController(PentairControllerHandler handler) {
+        controller.compareAndSet(handler, null);
+    }
+
+    /**
+     * Gets the online controller
+     *
+     * @return controller, null if none is online
+     */
+    public PentairControllerHandler getController() {
+        return controller.get();
+    }
+
+    /**
+     * Registers an online pump
+     *
+     * @param handler pump going online
+     */
+    public synchronized void addPump(PentairIntelliFloHandler handler) {
+        if (pumps.contains(handler)) {
+            return;
+        }
+
+        List<PentairIntelliFloHandler> list = new ArrayList<>(pumps);
+        list.add(handler);
+        pumps = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Unregisters a pump
+     *
+     * @param handler pump going offline
+     */
+    public synchronized void removePump(PentairIntelliFloHandler handler) {
+        if (!pumps.contains(handler)) {
+            return;
+        }
+
+        List<PentairIntelliFloHandler> list = new ArrayList<>(pumps);
+        list.remove(handler);
+        pumps = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Gets the online pumps
+     *
+     * @return immutable snapshot of the pumps, not affected by later changes
+     */
+    public List<PentairIntelliFloHandler> getPumps() {
+        return pumps;
+    }
+}
@@ -8,11 +8,14 @@
  */
 package org.openhab.binding.pentair.internal.handler;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.net.Socket;
-import java.net.UnknownHostException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.smarthome.core.thing.Bridge;
 import org.eclipse.smarthome.core.thing.ThingStatus;
@@ -24,50 +27,93 @@ import org.slf4j.LoggerFactory;
 /**
  * Handler for the IPBridge. Implements the connect and disconnect abstract methods of {@link PentairBaseBridgeHandler}
  *
+ * The connection uses a non-blocking NIO {@link SocketChannel}. The parser thread waits on a {@link Selector} and reads
+ * whatever bytes are available in bulk into the bridge's reusable read buffer. While a controller is active on the bus
+ * it broadcasts its status every few seconds, so a connection on which nothing has been received for
+ * {@link #READ_IDLE_TIMEOUT} is then considered lost, e.g. when the gateway went away without closing the socket. Buses
+ * without a controller, where the only traffic may be the bridge's own pump polls, are not watched.
+ *
  * @author Jeff James - Initial contribution
  *
  */
 public class PentairIPBridgeHandler extends PentairBaseBridgeHandler {
     private final Logger logger = LoggerFactory.getLogger(PentairIPBridgeHandler.class);
 
-    /** Socket object for connection */
-    protected Socket socket;
+    /** how long the parser waits on the selector before checking whether it was interrupted */
+    private static final int SELECT_TIMEOUT = 1000;
+    /** how long a write waits for the socket to drain before giving up */
+    private static final int WRITE_TIMEOUT = 2000;
+    /** how long to wait for the connection to the gateway to be established */
+    private static final int CONNECT_TIMEOUT = 5000;
+    /** how long in seconds the connection may go without receiving any data before it is considered lost */
+    private static final int READ_IDLE_TIMEOUT = 30;
+
+    /** Socket channel for connection */
+    protected SocketChannel channel;
+    /** Selector used to wait for incoming data on the channel */
+    protected Selector selector;
+    /** Selector used by writes to wait for the socket to drain */
+    protected Selector writeselector;
 
     public PentairIPBridgeHandler(Bridge bridge) {
         super(bridge);
     }
 
+    /**
+     * Opens the connection to the gateway. The socket is connected without holding the handler's monitor and with a
+     * timeout, so an unreachable gateway delays neither dispose nor the other threads of the bridge.
+     */
     @Override
-    protected synchronized int connect() {
+    protected int connect() {
         PentairIPBridgeConfig configuration = getConfigAs(PentairIPBridgeConfig.class);
 
         id = configuration.id;
 
+        InetSocketAddress address = new InetSocketAddress(configuration.address, configuration.port);
+        if (address.isUnresolved()) {
+            String msg = String.format("unknown host name: %s", configuration.address);
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR, msg);
+            return -1;
+        }
+
         try {
-            socket = new Socket(configuration.address, configuration.port);
-            reader = new BufferedInputStream(socket.getInputStream());
-            writer = new BufferedOutputStream(socket.getOutputStream());
+            SocketChannel ch = SocketChannel.open();
+
+            // published before connecting, so a disconnect closes the channel and aborts a pending connect
+            synchronized (this) {
+                channel = ch;
+            }
+
+            ch.socket().connect(address, CONNECT_TIMEOUT);
+            ch.configureBlocking(false);
+            ch.socket().setKeepAlive(true);
+
+            synchronized (this) {
+                if (channel != ch) {
+                    throw new IOException("disconnected while connecting");
+                }
+
+                selector = Selector.open();
+                channel.register(selector, SelectionKey.OP_READ);
+                writeselector = Selector.open();
+                channel.register(writeselector, SelectionKey.OP_WRITE);
+
+                parser = new Parser();
+                thread = new Thread(parser);
+                thread.start();
+            }
 
             logger.info("Pentair IPBridge connected to {}:{}", configuration.address, configuration.port);
-        } catch (UnknownHostException e) {
-            String msg = String.format("unknown host name: %s", configuration.address);
-            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR, msg);
-            return -1;
         } catch (IOException e) {
-            String msg = String.format("cannot open connection to %s", configuration.address);
-            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR, msg);
+            String msg = String.format("cannot open connection to %s: %s", configuration.address, e.getMessage());
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR, msg);
+            synchronized (this) {
+                closeChannel();
+            }
             return -2;
         }
 
-        parser = new Parser();
-        thread = new Thread(parser);
-        thread.start();
-
-        if (socket != null && reader != null && writer != null) {
-            updateStatus(ThingStatus.ONLINE);
-        } else {
-            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR, "Unable to connect");
-        }
+        updateStatus(ThingStatus.ONLINE);
 
         return 0;
     }
@@ -76,42 +122,127 @@ public class PentairIPBridgeHandler extends PentairBaseBridgeHandler {
     protected synchronized void disconnect() {
         updateStatus(ThingStatus.OFFLINE);
 
-        if (thread != null) {
+        // closing the selector wakes up the parser, so it exits without waiting for the select timeout
+        interruptParser();
+        closeChannel();
+        joinParser();
+    }
+
+    /**
+     * Closes the selectors and socket channel, if open.
+     */
+    private void closeChannel() {
+        if (selector != null) {
             try {
-                thread.interrupt();
-                thread.join(); // wait for thread to complete
-            } catch (InterruptedException e) {
-                // do nothing
+                selector.close();
+            } catch (IOException e) {
+                logger.debug("error when closing selector ", e);
             }
-            thread = null;
-            parser = null;
+            selector = null;
         }
 
-        if (reader != null) {
+        if (writeselector != null) {
             try {
-                reader.close();
+                writeselector.close();
             } catch (IOException e) {
-                updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR, "Error in closing reader");
+                logger.debug("error when closing selector ", e);
             }
-            reader = null;
+            writeselector = null;
         }
 
-        if (writer != null) {
+        if (channel != null) {
             try {
-                writer.close();
+                channel.close();
             } catch (IOException e) {
-                updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.COMMUNICATION_ERROR, "Error in closing writer");
+                logger.error("error when closing socket ", e);
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Waits on the selector until the channel is readable and reads all available bytes in one call. Returns -1 as soon
+     * as the peer closes the connection or the channel is closed by {@link #disconnect()}.
+     *
+     * @throws IOException on a read error, or when no data has been received for {@link #READ_IDLE_TIMEOUT} while a
+     *             controller is active
+     */
+    @Override
+    protected int fillBuffer(ByteBuffer buf) throws IOException {
+        Selector sel = selector;
+        SocketChannel ch = channel;
+
+        if (sel == null || ch == null) {
+            return -1;
+        }
+
+        // only a bus with an active controller is expected to carry traffic, a pump only bus may be quiet for minutes
+        long now = System.nanoTime();
+        boolean watchdog = monitor.isControllerActive(now);
+        long deadline = now + TimeUnit.SECONDS.toNanos(READ_IDLE_TIMEOUT);
+
+        try {
+            while (!Thread.currentThread().isInterrupted() && ch.isOpen()) {
+                int n = ch.read(buf);
+                if (n != 0) {
+                    return n;
+                }
+
+                long remaining = SELECT_TIMEOUT;
+                if (watchdog) {
+                    remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remaining <= 0) {
+                        throw new IOException(String.format("no data received for %d s", READ_IDLE_TIMEOUT));
+                    }
+                }
+
+                sel.select(Math.min(SELECT_TIMEOUT, remaining));
+                sel.selectedKeys().clear();
             }
-            writer = null;
+        } catch (ClosedSelectorException e) {
+            // selector closed by disconnect
+        }
+
+        return -1;
+    }
+
+    @Override
+    protected boolean isWritable() {
+        return channel != null;
+    }
+
+    /**
+     * Writes all bytes, waiting on the write selector while the socket buffer is full, but no longer than
+     * {@link #WRITE_TIMEOUT}.
+     */
+    @Override
+    protected void write(byte[] buf, int len) throws IOException {
+        SocketChannel ch = channel;
+        Selector sel = writeselector;
+
+        if (ch == null || sel == null) {
+            return;
         }
 
-        if (socket != null) {
+        ByteBuffer bb = ByteBuffer.wrap(buf, 0, len);
+        long deadline = System.currentTimeMillis() + WRITE_TIMEOUT;
+
+        synchronized (ch) {
             try {
-                socket.close();
-            } catch (IOException e) {
-                logger.error("error when closing socket ", e);
+                while (bb.hasRemaining()) {
+                    if (ch.write(bb) == 0) {
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            throw new IOException("Timeout writing to socket");
+                        }
+
+                        sel.select(remaining);
+                        sel.selectedKeys().clear();
+                    }
+                }
+            } catch (ClosedSelectorException e) {
+                throw new IOException("Socket closed while writing");
             }
-            socket = null;
         }
     }
 }
@@ -10,6 +10,8 @@ package org.openhab.binding.pentair.internal.handler;
 
 import static org.openhab.binding.pentair.internal.PentairBindingConstants.*;
 
+import java.util.concurrent.TimeUnit;
+
 import org.eclipse.smarthome.core.library.types.DecimalType;
 import org.eclipse.smarthome.core.thing.ChannelUID;
 import org.eclipse.smarthome.core.thing.Thing;
@@ -21,14 +23,17 @@ import org.eclipse.smarthome.core.types.RefreshType;
 import org.openhab.binding.pentair.internal.PentairBindingConstants;
 import org.openhab.binding.pentair.internal.PentairPacket;
 import org.openhab.binding.pentair.internal.PentairPacketIntellichlor;
+import org.openhab.binding.pentair.internal.PentairStates;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * The {@link PentairIntelliChlorHandler} is responsible for implementation of the Intellichlor Salt generator. It will
  * process
- * Intellichlor commands and set the appropriate channel states. There are currently no commands implemented for this
- * Thing to receive from the framework.
+ * Intellichlor commands and set the appropriate channel states. The salt output can be set if there is no controller
+ * driving the chlorinator. Since the chlorinator stops generating when it is no longer commanded, the output is then
+ * repeated every {@link #KEEPALIVE_INTERVAL} from the bridge's keepalive timer wheel, as long as no controller takes
+ * over.
  *
  * @author Jeff James - Initial contribution
  */
@@ -36,8 +41,17 @@ public class PentairIntelliChlorHandler extends PentairBaseThingHandler {
     private final Logger logger = LoggerFactory.getLogger(PentairIntelliChlorHandler.class);
     private boolean waitStatusForOnline = false;
 
+    /** interval at which the salt output is repeated while the bridge drives the chlorinator */
+    public static final long KEEPALIVE_INTERVAL = TimeUnit.SECONDS.toNanos(4);
+
+    /** salt output set through the saltoutput channel, -1 if not set */
+    private volatile int output = -1;
+
+    /** current/last packets received, each owns its buffer since the dispatched packet is reused by the bridge */
     protected PentairPacketIntellichlor pic3cur = new PentairPacketIntellichlor();
     protected PentairPacketIntellichlor pic4cur = new PentairPacketIntellichlor();
+    protected PentairPacketIntellichlor pic3old = new PentairPacketIntellichlor();
+    protected PentairPacketIntellichlor pic4old = new PentairPacketIntellichlor();
 
     public PentairIntelliChlorHandler(Thing thing) {
         super(thing);
@@ -47,7 +61,7 @@ public class PentairIntelliChlorHandler extends PentairBaseThingHandler {
     public void initialize() {
         logger.debug("Initializing IntelliChlor - Thing ID: {}.", this.getThing().getUID());
 
-        id = 0; // Intellichlor doesn't have ID
+        setPentairID(0); // Intellichlor doesn't have ID
 
         goOnline();
     }
@@ -57,17 +71,35 @@ public class PentairIntelliChlorHandler extends PentairBaseThingHandler {
         logger.debug("Thing {} disposed.", getThing().getUID());
 
         goOffline(ThingStatusDetail.NONE);
+        unregisterRoute();
     }
 
     public void goOnline() {
         logger.debug("Thing {} goOnline.", getThing().getUID());
 
         waitStatusForOnline = true;
+
+        PentairBaseBridgeHandler bh = getBridgeHandler();
+        if (bh == null) {
+            logger.debug("Bridge does not exist");
+            return;
+        }
+
+        registerRoute(bh);
+
+        if (output >= 0) {
+            bh.scheduleKeepalive(this, KEEPALIVE_INTERVAL);
+        }
     }
 
     public void goOffline(ThingStatusDetail detail) {
         logger.debug("Thing {} goOffline.", getThing().getUID());
 
+        PentairBaseBridgeHandler bh = getBridgeHandler();
+        if (bh != null) {
+            bh.cancelKeepalive(this);
+        }
+
         updateStatus(ThingStatus.OFFLINE, detail);
     }
 
@@ -85,7 +117,83 @@ public class PentairIntelliChlorHandler extends PentairBaseThingHandler {
         if (command instanceof RefreshType) {
             logger.trace("IntelliChlor received refresh command");
             updateChannel(channelUID.getId(), null);
+        } else if (command instanceof DecimalType) {
+            int num = ((DecimalType) command).intValue();
+
+            switch (channelUID.getId()) {
+                case INTELLICHLOR_SALTOUTPUT:
+                    setSaltOutput(num);
+                    break;
+            }
+        }
+    }
+
+    protected boolean checkOtherMaster() {
+        PentairBaseBridgeHandler bh = getBridgeHandler();
+        if (bh == null) {
+            return false;
+        }
+
+        PentairControllerHandler pch = bh.getRegistry().getController();
+        if (pch != null) {
+            return !pch.isServiceMode();
         }
+
+        return bh.isControllerActive(); // controller on the bus, but not configured as a Thing
+    }
+
+    /**
+     * Sets the salt output of the chlorinator and keeps repeating it
+     *
+     * @param percent salt output in % (0-100)
+     */
+    public void setSaltOutput(int percent) {
+        logger.debug("setSaltOutput: {}", percent);
+
+        if (percent < 0 || percent > 100) {
+            logger.info("Salt output {} out of range (0-100)", percent);
+            return;
+        }
+
+        if (checkOtherMaster()) {
+            logger.info("Unable to send command to chlorinator as there is another master in the system");
+            return;
+        }
+
+        PentairBaseBridgeHandler bh = getBridgeHandler();
+        if (bh == null) {
+            return;
+        }
+
+        output = percent;
+        bh.writeIntellichlor(saltOutputCommand(percent));
+        bh.scheduleKeepalive(this, KEEPALIVE_INTERVAL);
+    }
+
+    /**
+     * Called by the bridge when the keepalive is due. Repeats the salt output unless a controller has taken over
+     * driving the chlorinator, and sets the next keepalive.
+     */
+    public void keepalive() {
+        PentairBaseBridgeHandler bh = getBridgeHandler();
+        if (bh == null || output < 0) {
+            return;
+        }
+
+        if (checkOtherMaster()) {
+            logger.trace("Keepalive to chlorinator suppressed, another master is driving it");
+        } else {
+            bh.writeIntellichlor(saltOutputCommand(output));
+        }
+
+        bh.scheduleKeepalive(this, KEEPALIVE_INTERVAL);
+    }
+
+    /* Commands to send to Intellichlor */
+
+    private byte[] saltOutputCommand(int percent) {
+        return PentairPacketIntellichlor.buildFrame(PentairPacketIntellichlor.CHLORINATOR,
+                PentairPacketIntellichlor.SET_SALTOUTPUT, percent);
     }
 
     @Override
@@ -103,10 +211,12 @@ public class PentairIntelliChlorHandler extends PentairBaseThingHandler {
                     break;
                 }
 
-                PentairPacketIntellichlor pic3Old = pic3cur;
-                pic3cur = pic;
+                PentairPacketIntellichlor pic3swap = pic3old;
+                pic3old = pic3cur;
+                pic3cur = pic3swap;
+                pic3cur.parsePacket(pic);
 
-                updateChannel(INTELLICHLOR_SALTOUTPUT, pic3Old);
+                updateChannel(INTELLICHLOR_SALTOUTPUT, pic3old);
 
                 break;
             case 4:
@@ -114,10 +224,12 @@ public class PentairIntelliChlorHandler extends PentairBaseThingHandler {
                     break;
                 }
 
-                PentairPacketIntellichlor pic4Old = pic4cur;
-                pic4cur = pic;
+                PentairPacketIntellichlor pic4swap = pic4old;
+                pic4old = pic4cur;
+                pic4cur = pic4swap;
+                pic4cur.parsePacket(pic);
 
-                updateChannel(INTELLICHLOR_SALINITY, pic4Old);
+                updateChannel(INTELLICHLOR_SALINITY, pic4old);
 
                 break;
         }
@@ -138,12 +250,12 @@ public class PentairIntelliChlorHandler extends PentairBaseThingHandler {
         switch (channel) {
             case INTELLICHLOR_SALINITY:
                 if (pic == null || (pic.salinity != pic4cur.salinity)) {
-                    updateState(channel, new DecimalType(pic4cur.salinity));
+                    updateState(channels.get(channel), PentairStates.decimal(pic4cur.salinity));
                 }
                 break;
             case INTELLICHLOR_SALTOUTPUT:
                 if (pic == null || (pic.saltoutput != pic3cur.saltoutput)) {
-                    updateState(channel, new DecimalType(pic3cur.saltoutput));
+                    updateState(channels.get(channel), PentairStates.decimal(pic3cur.saltoutput));
                 }
                 break;
         }
@@ -11,22 +11,22 @@ package org.openhab.binding.pentair.internal.handler;
 import static org.openhab.binding.pentair.internal.PentairBindingConstants.*;
 
 import java.math.BigDecimal;
-import java.util.List;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.smarthome.core.library.types.DecimalType;
 import org.eclipse.smarthome.core.library.types.OnOffType;
 import org.eclipse.smarthome.core.library.types.StringType;
-import org.eclipse.smarthome.core.thing.Bridge;
 import org.eclipse.smarthome.core.thing.ChannelUID;
 import org.eclipse.smarthome.core.thing.Thing;
 import org.eclipse.smarthome.core.thing.ThingStatus;
 import org.eclipse.smarthome.core.thing.ThingStatusDetail;
 import org.eclipse.smarthome.core.thing.ThingStatusInfo;
 import org.eclipse.smarthome.core.types.Command;
+import org.openhab.binding.pentair.internal.PentairAdaptiveTimeout;
+import org.openhab.binding.pentair.internal.PentairCommandSequencer;
 import org.openhab.binding.pentair.internal.PentairPacket;
 import org.openhab.binding.pentair.internal.PentairPacketPumpStatus;
+import org.openhab.binding.pentair.internal.PentairStates;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,12 +40,28 @@ import org.slf4j.LoggerFactory;
 public class PentairIntelliFloHandler extends PentairBaseThingHandler {
 
     private final Logger logger = LoggerFactory.getLogger(PentairIntelliFloHandler.class);
+
+    /** response timeouts in ms, the pump normally acknowledges a command within a few bus frames */
+    private static final long INITIAL_TIMEOUT = 1000;
+    private static final long MIN_TIMEOUT = 100;
+    private static final long MAX_TIMEOUT = 3000;
+    /** default time in s without a pump status from another master before a listen only pump is polled */
+    private static final int DEFAULT_SNOOP_WINDOW = 60;
+
     protected PentairPacketPumpStatus ppscur = new PentairPacketPumpStatus();
 
     private boolean waitStatusForOnline = false;
-
-    /** polling job for pump status */
-    static protected ScheduledFuture<?> pollingjob;
+    /** only listen to the traffic between another master and the pump, unless the pump is not polled by anyone */
+    private boolean listenonly;
+    /** time in s without a pump status before a listen only pump is polled */
+    private int snoopwindow;
+
+    /** response timeout of the pump, learned from the time it takes to acknowledge commands */
+    protected final PentairAdaptiveTimeout responsetimeout = new PentairAdaptiveTimeout(INITIAL_TIMEOUT, MIN_TIMEOUT,
+            MAX_TIMEOUT);
+    /** sends command sequences to the pump, advancing as each command is acknowledged */
+    protected final PentairCommandSequencer sequencer = new PentairCommandSequencer(scheduler, this::writePacket,
+            responsetimeout);
 
     public PentairIntelliFloHandler(Thing thing) {
         super(thing);
@@ -55,7 +71,12 @@ public class PentairIntelliFloHandler extends PentairBaseThingHandler {
     public void initialize() {
         logger.debug("Initializing Intelliflo - Thing ID: {}.", this.getThing().getUID());
 
-        id = ((BigDecimal) getConfig().get("id")).intValue();
+        setPentairID(((BigDecimal) getConfig().get("id")).intValue());
+
+        Object value = getConfig().get(CONFIG_LISTENONLY);
+        listenonly = (value instanceof Boolean) && (Boolean) value;
+        value = getConfig().get(CONFIG_SNOOPWINDOW);
+        snoopwindow = (value instanceof BigDecimal) ? ((BigDecimal) value).intValue() : DEFAULT_SNOOP_WINDOW;
 
         goOnline();
     }
@@ -64,31 +85,29 @@ public class PentairIntelliFloHandler extends PentairBaseThingHandler {
     public void dispose() {
         logger.debug("Thing {} disposed.", getThing().getUID());
         goOffline(ThingStatusDetail.NONE);
+        unregisterRoute();
     }
 
     public void goOnline() {
         logger.debug("Thing {} goOnline.", getThing().getUID());
 
         // make sure bridge exists and is online
-        Bridge bridge = this.getBridge();
-        if (bridge == null) {
-            return;
-        }
-        PentairBaseBridgeHandler bh = (PentairBaseBridgeHandler) bridge.getHandler();
+        PentairBaseBridgeHandler bh = getBridgeHandler();
         if (bh == null) {
             logger.debug("Bridge does not exist");
             return;
         }
 
+        registerRoute(bh);
+
         ThingStatus ts = bh.getThing().getStatus();
         if (!ts.equals(ThingStatus.ONLINE)) {
             logger.debug("Bridge is not online");
             return;
         }
 
-        if (pollingjob == null) {
-            pollingjob = scheduler.scheduleWithFixedDelay(new PumpStatus(), 10, 30, TimeUnit.SECONDS);
-        }
+        responsetimeout.setHistogram(bh.getMetrics().getAckLatency());
+        bh.pumpOnline(this, listenonly ? TimeUnit.SECONDS.toNanos(snoopwindow) : 0);
 
         waitStatusForOnline = true;
     }
@@ -96,54 +115,16 @@ public class PentairIntelliFloHandler extends PentairBaseThingHandler {
     public void goOffline(ThingStatusDetail detail) {
         logger.debug("Thing {} goOffline.", getThing().getUID());
 
-        pollingjob.cancel(true);
-        pollingjob = null;
+        sequencer.cancel();
+
+        PentairBaseBridgeHandler bh = getBridgeHandler();
+        if (bh != null) {
+            bh.pumpOffline(this);
+        }
 
         updateStatus(ThingStatus.OFFLINE, detail);
     }
 
-    /**
-     * Job to send pump query status packages to all Intelliflo Pump things in order to see the status.
-     * Note: From the internet is seems some FW versions of EasyTouch controllers send this automatically and this the
-     * pump status packets can just be snooped, however my controller version does not do this. No harm in sending.
-     *
-     * @author Jeff James
-     *
-     */
-    class PumpStatus implements Runnable {
-        @Override
-        public void run() {
-            Bridge bridge = getBridge();
-            if (bridge == null) {
-                return;
-            }
-
-            List<Thing> things = bridge.getThings();
-
-            for (Thing t : things) {
-                if (!t.getThingTypeUID().equals(INTELLIFLO_THING_TYPE)) {
-                    continue;
-                }
-
-                PentairIntelliFloHandler handler = (PentairIntelliFloHandler) t.getHandler();
-                if (handler == null) {
-                    return;
-                }
-
-                /*
-                 * if (handler.runmode == true) {
-                 * // Does pump always send status after command?
-                 * // handler.sendPumpOnOROff(true);
-                 * } else {
-                 * handler.requestPumpStatus();
-                 * }
-                 */
-
-                handler.requestPumpStatus();
-            }
-        }
-    };
-
     @Override
     public void bridgeStatusChanged(ThingStatusInfo bridgeStatusInfo) {
         if (bridgeStatusInfo.getStatus() == ThingStatus.OFFLINE) {
@@ -156,53 +137,79 @@ public class PentairIntelliFloHandler extends PentairBaseThingHandler {
     // checkOtherMaster - check to make sure the system does not have a controller OR that the controller is in
     // servicemode
     protected boolean checkOtherMaster() {
-        PentairControllerHandler pch = PentairControllerHandler.onlineController;
+        PentairBaseBridgeHandler bh = getBridgeHandler();
+        PentairControllerHandler pch = (bh == null) ? null : bh.getRegistry().getController();
 
-        if (pch != null && pch.servicemode == false) {
-            return true;
+        return pch != null && !pch.isServiceMode();
+    }
+
+    /* Commands to send to IntelliFlo */
+
+    private byte[] requestPumpStatusCommand() {
+        return new byte[] { (byte) 0xA5, (byte) 0x00, (byte) id, (byte) 0x00 /* source */, (byte) 0x07, (byte) 0x00 };
+    }
+
+    private byte[] localORRemoteControlCommand(boolean bLocal) {
+        return new byte[] { (byte) 0xA5, (byte) 0x00, (byte) id, (byte) 0x00 /* source */, (byte) 0x04, (byte) 0x01,
+                (bLocal) ? (byte) 0x00 : (byte) 0xFF };
+    }
+
+    private byte[] pumpOnOROffCommand(boolean bOn) {
+        return new byte[] { (byte) 0xA5, (byte) 0x00, (byte) id, (byte) 0x00 /* source */, (byte) 0x06, (byte) 0x01,
+                (bOn) ? (byte) 0x0A : (byte) 0x04 };
+    }
+
+    private byte[] pumpRPMCommand(int rpm) {
+        if (rpm < 400 || rpm > 3450) {
+            throw new IllegalArgumentException("rpm not in range [400..3450]: " + rpm);
         }
 
-        return false;
+        int rpmH = rpm / 256;
+        int rpmL = rpm % 256;
+
+        return new byte[] { (byte) 0xA5, (byte) 0x00, (byte) id, (byte) 0x00 /* source */, (byte) 0x01, (byte) 0x04,
+                (byte) 0x02, (byte) 0xC4, (byte) rpmH, (byte) rpmL };
     }
 
-    /* Commands to send to IntelliFlo */
+    private byte[] runProgramCommand(int program) {
+        return new byte[] { (byte) 0xA5, (byte) 0x00, (byte) id, (byte) 0x00 /* source */, (byte) 0x01, (byte) 0x04,
+                (byte) 0x03, (byte) 0x21, (byte) 0x00, (byte) (program << 3) };
+    }
 
     public void sendRequestPumpStatus() {
         logger.debug("sendRequestPumpStatus");
-        byte[] packet = { (byte) 0xA5, (byte) 0x00, (byte) id, (byte) 0x00 /* source */, (byte) 0x07, (byte) 0x00 };
 
-        writePacket(packet);
+        writePacket(requestPumpStatusCommand());
     }
 
     public void requestPumpStatus() {
         logger.debug("requestPumpStatus");
 
-        sendLocalORRemoteControl(false);
-        delay300();
-        sendRequestPumpStatus();
+        // a command in progress ends with a status request anyway
+        if (sequencer.isBusy()) {
+            return;
+        }
+
+        sequencer.start(localORRemoteControlCommand(false), requestPumpStatusCommand());
     }
 
     public void sendLocalORRemoteControl(boolean bLocal) {
-        byte[] packet = { (byte) 0xA5, (byte) 0x00, (byte) id, (byte) 0x00 /* source */, (byte) 0x04, (byte) 0x01,
-                (bLocal) ? (byte) 0x00 : (byte) 0xFF };
-
         logger.debug("sendLocalORRemoteControl: {}", bLocal);
 
-        writePacket(packet);
+        writePacket(localORRemoteControlCommand(bLocal));
     }
 
     public void sendPumpOnOROff(boolean bOn) {
-        byte[] packet = { (byte) 0xA5, (byte) 0x00, (byte) id, (byte) 0x00 /* source */, (byte) 0x06, (byte) 0x01,
-                (bOn) ? (byte) 0x0A : (byte) 0x04 };
-
         logger.debug("sendPumpOnOROff: {}", bOn);
         if (checkOtherMaster()) {
             logger.info("Unable to send command to pump as there is another master in the system");
             return;
         }
-        writePacket(packet);
+
+        writePacket(pumpOnOROffCommand(bOn));
     }
 
+    // setPumpOnOROff - high-level call that includes wrapper commands, each sent once the previous one is acknowledged
     public void setPumpOnOROff(boolean bOn) {
         logger.debug("setPumpOnOROff: {}", bOn);
 
@@ -210,53 +217,38 @@ public class PentairIntelliFloHandler extends PentairBaseThingHandler {
             helperClearPrograms(0);
         }
 
-        sendLocalORRemoteControl(false);
-        delay300();
-        sendPumpOnOROff(bOn);
-        delay300();
-        sendRequestPumpStatus();
-        delay300();
-        // sendLocalORRemoteControl(true);
+        if (checkOtherMaster()) {
+            logger.info("Unable to send command to pump as there is another master in the system");
+            return;
+        }
+
+        sequencer.start(localORRemoteControlCommand(false), pumpOnOROffCommand(bOn), requestPumpStatusCommand());
     }
 
     // sendPumpRPM - low-level call to send to pump the RPM command
     public void sendPumpRPM(int rpm) {
-        int rpmH, rpmL;
-
         logger.debug("sendPumpRPM: {}", rpm);
         if (checkOtherMaster()) {
             logger.info("Unable to send command to pump as there is another master in the system");
             return;
         }
 
-        rpmH = rpm / 256;
-        rpmL = rpm % 256;
-
-        byte[] packet = { (byte) 0xA5, (byte) 0x00, (byte) id, (byte) 0x00 /* source */, (byte) 0x01, (byte) 0x04,
-                (byte) 0x02, (byte) 0xC4, (byte) rpmH, (byte) rpmL };
-
-        if (rpm < 400 || rpm > 3450) {
-            throw new IllegalArgumentException("rpm not in range [400..3450]: " + rpm);
-        }
-
-        writePacket(packet);
+        writePacket(pumpRPMCommand(rpm));
     }
 
-    // setPumpRPM - high-level call that includes wrapper commands and delay functions
+    // setPumpRPM - high-level call that includes wrapper commands, each sent once the previous one is acknowledged
     public void setPumpRPM(int rpm) {
         logger.debug("setPumpRPM: {}", rpm);
 
         helperClearPrograms(0);
 
-        sendLocalORRemoteControl(false);
-        delay300();
-        sendPumpRPM(rpm);
-        delay300();
-        sendPumpOnOROff(true);
-        delay300();
-        sendRequestPumpStatus();
-        delay300();
-        // sendLocalORRemoteControl(true);
+        if (checkOtherMaster()) {
+            logger.info("Unable to send command to pump as there is another master in the system");
+            return;
+        }
+
+        sequencer.start(localORRemoteControlCommand(false), pumpRPMCommand(rpm), pumpOnOROffCommand(true),
+                requestPumpStatusCommand());
     }
 
     // sendRunProgram - low-level call to send the command to pump
@@ -272,45 +264,45 @@ public class PentairIntelliFloHandler extends PentairBaseThingHandler {
             return;
         }
 
-        byte[] packet = { (byte) 0xA5, (byte) 0x00, (byte) id, (byte) 0x00 /* source */, (byte) 0x01, (byte) 0x04,
-                (byte) 0x03, (byte) 0x21, (byte) 0x00, (byte) (program << 3) };
-
-        writePacket(packet);
+        writePacket(runProgramCommand(program));
     }
 
-    // setRunProgram - high-level call to run program - including wrapper calls
+    // setRunProgram - high-level call to run program - including wrapper calls, each sent once the previous one is
+    // acknowledged
     public void setRunProgram(int program) {
         logger.debug("setRunProgram: {}", program);
 
         helperClearPrograms(program);
 
-        sendLocalORRemoteControl(false);
-        delay300();
-        sendRunProgram(program);
-        delay300();
-        sendPumpOnOROff(true);
-        delay300();
-        sendRequestPumpStatus();
-        delay300();
-        // sendLocalORRemoteControl(true);
+        if (checkOtherMaster()) {
+            logger.info("Unable to send command to pump as there is another master in the system");
+            return;
+        }
+
+        if (program < 1 || program > 4) {
+            return;
+        }
+
+        sequencer.start(localORRemoteControlCommand(false), runProgramCommand(program), pumpOnOROffCommand(true),
+                requestPumpStatusCommand());
     }
 
     // helperClearPrograms - turns off any other channels/items that were used to start the pump
     public void helperClearPrograms(int program) {
         if (program != 1) {
-            updateState(INTELLIFLO_PROGRAM1, OnOffType.OFF);
+            updateState(channels.get(INTELLIFLO_PROGRAM1), OnOffType.OFF);
         }
 
         if (program != 2) {
-            updateState(INTELLIFLO_PROGRAM2, OnOffType.OFF);
+            updateState(channels.get(INTELLIFLO_PROGRAM2), OnOffType.OFF);
         }
 
         if (program != 3) {
-            updateState(INTELLIFLO_PROGRAM3, OnOffType.OFF);
+            updateState(channels.get(INTELLIFLO_PROGRAM3), OnOffType.OFF);
         }
 
         if (program != 4) {
-            updateState(INTELLIFLO_PROGRAM4, OnOffType.OFF);
+            updateState(channels.get(INTELLIFLO_PROGRAM4), OnOffType.OFF);
         }
     }
 
@@ -364,8 +356,66 @@ public class PentairIntelliFloHandler extends PentairBaseThingHandler {
         }
     }
 
+    /**
+     * Processes a command from another master on the bus (e.g. the controller) to this pump. In listen only mode the
+     * run, mode and rpm channels follow the commands, as the bridge does not query the pump itself while the other
+     * master is in control. The pump's replies are processed by {@link #processPacketFrom}.
+     *
+     * @param p command to the pump
+     */
+    public void processPacketTo(PentairPacket p) {
+        switch (p.getAction()) {
+            case 1: // Pump command - A5 00 60 10 01 04 02 C4 05 DC
+                if (p.getLength() == 4 && p.getByte(PentairPacket.STARTOFDATA) == (byte) 0x02
+                        && p.getByte(PentairPacket.STARTOFDATA + 1) == (byte) 0xC4) {
+                    int rpm = ((p.getByte(PentairPacket.STARTOFDATA + 2) & 0xFF) << 8)
+                            + (p.getByte(PentairPacket.STARTOFDATA + 3) & 0xFF);
+                    logger.debug("Pump {} set to {} rpm by {}", id, rpm, p.getSource());
+
+                    if (listenonly) {
+                        updateChannel(INTELLIFLO_RPM, rpm);
+                    }
+                } else {
+                    logger.debug("Pump command to {} by {}: {}", id, p.getSource(), p);
+                }
+                break;
+            case 4: // Pump control panel on/off
+                logger.debug("Pump {} remote control {} by {}", id, p.getByte(PentairPacket.STARTOFDATA) == (byte) 0xFF,
+                        p.getSource());
+                break;
+            case 5: // Set pump mode
+                logger.debug("Pump {} mode set to {} by {}", id, p.getByte(PentairPacket.STARTOFDATA), p.getSource());
+
+                if (listenonly && p.getLength() == 1) {
+                    updateChannel(INTELLIFLO_MODE, p.getByte(PentairPacket.STARTOFDATA) & 0xFF);
+                }
+                break;
+            case 6: // Set run mode, 0A to start and 04 to stop
+                logger.debug("Pump {} run mode set to {} by {}", id, p.getByte(PentairPacket.STARTOFDATA),
+                        p.getSource());
+
+                if (listenonly && p.getLength() == 1) {
+                    updateChannel(INTELLIFLO_RUN, p.getByte(PentairPacket.STARTOFDATA) == (byte) 0x0A);
+                }
+                break;
+            case 7: // Pump status request, the status reply is processed like one to our own request
+                logger.trace("Pump {} status requested by {}", id, p.getSource());
+                break;
+            default:
+                logger.trace("Command to pump {} by {}: {}", id, p.getSource(), p);
+                break;
+        }
+    }
+
     @Override
     public void processPacketFrom(PentairPacket p) {
+        PentairBaseBridgeHandler bh = getBridgeHandler();
+
+        // replies to another master must not advance our own command sequence
+        if (bh != null && (p.getDest() & 0xFF) == bh.getId()) {
+            sequencer.onResponse(p.getAction() & 0xFF);
+        }
+
         switch (p.getAction()) {
             case 1: // Pump command - A5 00 10 60 01 02 00 20
                 logger.debug("Pump command (ack): {}: ", p);
@@ -380,8 +430,12 @@ public class PentairIntelliFloHandler extends PentairBaseThingHandler {
             case 5: // Set pump mode ack
                 logger.debug("Set pump mode (ack) {}: {} - {}", p.getSource(), p.getByte(PentairPacket.STARTOFDATA), p);
                 break;
-            case 6: // Set run mode ack
+            case 6: // Set run mode ack, 0A when started and 04 when stopped
                 logger.debug("Set run mode (ack) {}: {} - {}", p.getSource(), p.getByte(PentairPacket.STARTOFDATA), p);
+
+                if (p.getLength() == 1) {
+                    updateChannel(INTELLIFLO_RUN, p.getByte(PentairPacket.STARTOFDATA) == (byte) 0x0A);
+                }
                 break;
             case 7: // Pump status (after a request)
                 if (p.getLength() != 15) {
@@ -389,7 +443,8 @@ public class PentairIntelliFloHandler extends PentairBaseThingHandler {
                     return;
                 }
 
-                PentairPacketPumpStatus pps = new PentairPacketPumpStatus(p);
+                PentairPacketPumpStatus pps = ppscur;
+                pps.parsePacket(p);
 
                 /*
                  * P: A500 d=10 s=60 c=07 l=0f 0A0602024A08AC120000000A000F22 <028A>
@@ -415,14 +470,19 @@ public class PentairIntelliFloHandler extends PentairBaseThingHandler {
                 logger.debug("Pump status: {}", p);
 
                 updateChannel(INTELLIFLO_RUN, pps.run);
+                updateChannel(INTELLIFLO_MODE, pps.mode);
                 updateChannel(INTELLIFLO_POWER, pps.power);
                 updateChannel(INTELLIFLO_RPM, pps.rpm);
                 updateChannel(INTELLIFLO_ERROR, pps.error);
                 updateChannel(INTELLIFLO_TIMER, pps.timer);
 
+                if (bh != null) {
+                    bh.pumpStatus(this, pps.rpm, pps.power);
+                }
+
                 break;
             default:
-                logger.debug("Unhandled Intelliflo command: {}", p.toString());
+                logger.debug("Unhandled Intelliflo command: {}", p);
                 break;
         }
     }
@@ -431,14 +491,14 @@ public class PentairIntelliFloHandler extends PentairBaseThingHandler {
      * Helper function to update channel.
      */
     public void updateChannel(String channel, boolean value) {
-        updateState(channel, (value) ? OnOffType.ON : OnOffType.OFF);
+        updateState(channels.get(channel), PentairStates.onOff(value));
     }
 
     public void updateChannel(String channel, int value) {
-        updateState(channel, new DecimalType(value));
+        updateState(channels.get(channel), PentairStates.decimal(value));
     }
 
     public void updateChannel(String channel, String value) {
-        updateState(channel, new StringType(value));
+        updateState(channels.get(channel), new StringType(value));
     }
 }
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal.handler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.core.thing.Bridge;
+import org.eclipse.smarthome.core.thing.ThingStatus;
+import org.eclipse.smarthome.core.thing.ThingStatusDetail;
+import org.openhab.binding.pentair.internal.PentairCaptureReader;
+import org.openhab.binding.pentair.internal.config.PentairReplayBridgeConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Handler for the ReplayBridge. Feeds a capture file written by a bridge in capture mode back through the parser, with
+ * the captured timing scaled by the configured speed, or as fast as possible. Writes are discarded.
+ *
+ * @author Jeff James - initial contribution
+ *
+ */
+public class PentairReplayBridgeHandler extends PentairBaseBridgeHandler {
+    private final Logger logger = LoggerFactory.getLogger(PentairReplayBridgeHandler.class);
+
+    /** capture being replayed */
+    private PentairCaptureReader capture;
+    /** replay speed, 0 for as fast as possible */
+    private double speed;
+    /** time replay started */
+    private long replaystart;
+
+    public PentairReplayBridgeHandler(Bridge bridge) {
+        super(bridge);
+    }
+
+    @Override
+    protected synchronized int connect() {
+        PentairReplayBridgeConfig configuration = getConfigAs(PentairReplayBridgeConfig.class);
+
+        if (configuration.file == null || configuration.file.isEmpty()) {
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR, "No capture file configured");
+            return -1;
+        }
+
+        try {
+            capture = new PentairCaptureReader(Paths.get(configuration.file));
+        } catch (IOException e) {
+            String msg = String.format("cannot open capture file %s: %s", configuration.file, e.getMessage());
+            updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR, msg);
+            return -2;
+        }
+
+        speed = (configuration.speed == null) ? 1.0 : configuration.speed.doubleValue();
+        replaystart = System.nanoTime();
+
+        logger.info("Pentair ReplayBridge replaying {} at speed {}", configuration.file,
+                (speed > 0) ? speed : "max");
+
+        parser = new Parser();
+        thread = new Thread(parser);
+        thread.start();
+
+        updateStatus(ThingStatus.ONLINE);
+
+        return 0;
+    }
+
+    @Override
+    protected synchronized void disconnect() {
+        updateStatus(ThingStatus.OFFLINE);
+
+        interruptParser();
+
+        if (capture != null) {
+            try {
+                capture.close();
+            } catch (IOException e) {
+                logger.trace("IOException when closing capture file: {}", e);
+            }
+            capture = null;
+        }
+
+        joinParser();
+    }
+
+    /**
+     * Waits until the next chunk is due and copies it into the buffer. Once the capture has been replayed, waits until
+     * disconnected.
+     */
+    @Override
+    protected int fillBuffer(ByteBuffer buf) throws IOException {
+        PentairCaptureReader c = capture;
+
+        if (c == null) {
+            return -1;
+        }
+
+        try {
+            if (!c.hasNext()) {
+                logger.info("Replay complete");
+                updateStatus(ThingStatus.ONLINE, ThingStatusDetail.NONE, "Replay complete");
+
+                Thread.sleep(Long.MAX_VALUE);
+            }
+
+            if (speed > 0) {
+                long wait = replaystart + (long) (c.peekTimestamp() / speed) - System.nanoTime();
+
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+
+        return c.read(buf);
+    }
+
+    @Override
+    protected boolean isWritable() {
+        return false;
+    }
+}
@@ -13,6 +13,7 @@ import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.TooManyListenersException;
 
 import org.eclipse.smarthome.core.thing.Bridge;
 import org.eclipse.smarthome.core.thing.ThingStatus;
@@ -26,19 +27,33 @@ import gnu.io.CommPortIdentifier;
 import gnu.io.NoSuchPortException;
 import gnu.io.PortInUseException;
 import gnu.io.SerialPort;
+import gnu.io.SerialPortEvent;
+import gnu.io.SerialPortEventListener;
 import gnu.io.UnsupportedCommOperationException;
 
 /**
- * Handler for the IPBridge. Implements the connect and disconnect abstract methods of {@link PentairBaseBridgeHandler}
+ * Handler for the SerialBridge. Implements the connect and disconnect abstract methods of
+ * {@link PentairBaseBridgeHandler}
+ *
+ * Reads are event driven: the port notifies the handler when data is available and the bytes are read in bulk, with a
+ * receive threshold and timeout of about a frame, and pushed into the decoder directly on the notifying thread. If the
+ * port does not support this, the handler falls back to a parser thread doing blocking reads.
  *
  * @author Jeff James - initial contribution
  *
  */
-public class PentairSerialBridgeHandler extends PentairBaseBridgeHandler {
+public class PentairSerialBridgeHandler extends PentairBaseBridgeHandler implements SerialPortEventListener {
     private final Logger logger = LoggerFactory.getLogger(PentairSerialBridgeHandler.class);
 
+    /** number of bytes a read waits for, about the length of a status frame */
+    private static final int RECEIVE_THRESHOLD = 32;
+    /** time in ms a read waits for the threshold to be reached, about the time to receive the threshold at 9600 baud */
+    private static final int RECEIVE_TIMEOUT = 40;
+
     /** SerialPort object representing the port where the RS485 adapter is connected */
     SerialPort port;
+    /** input stream of the port, read on data available events */
+    private InputStream input;
 
     public PentairSerialBridgeHandler(Bridge bridge) {
         super(bridge);
@@ -67,13 +82,11 @@ public class PentairSerialBridgeHandler extends PentairBaseBridgeHandler {
             logger.debug("setting serial port parameters", configuration.serialPort);
             port.setSerialPortParams(9600, SerialPort.DATABITS_8, SerialPort.STOPBITS_1, SerialPort.PARITY_NONE);
             port.disableReceiveFraming();
-            port.disableReceiveThreshold();
 
             InputStream is = port.getInputStream();
             if (is == null) {
                 throw new Exception("Unable to getInputStream");
             }
-            reader = new BufferedInputStream(port.getInputStream());
 
             OutputStream os = port.getOutputStream();
             if (os == null) {
@@ -81,6 +94,8 @@ public class PentairSerialBridgeHandler extends PentairBaseBridgeHandler {
             }
             writer = new BufferedOutputStream(port.getOutputStream());
 
+            input = is;
+
         } catch (PortInUseException e) {
             String msg = String.format("cannot open serial port: %s", configuration.serialPort);
             updateStatus(ThingStatus.OFFLINE, ThingStatusDetail.CONFIGURATION_ERROR, msg);
@@ -111,9 +126,17 @@ public class PentairSerialBridgeHandler extends PentairBaseBridgeHandler {
         // if you have gotten this far, you should be connected to the serial port
         logger.info("Pentair Bridge connected to serial port: {}", configuration.serialPort);
 
-        parser = new Parser();
-        thread = new Thread(parser);
-        thread.start();
+        if (!startEvents()) {
+            // port does not support event driven bulk reads, fall back to parser thread
+            port.disableReceiveThreshold();
+            port.disableReceiveTimeout();
+            reader = new BufferedInputStream(input);
+            input = null;
+
+            parser = new Parser();
+            thread = new Thread(parser);
+            thread.start();
+        }
 
         updateStatus(ThingStatus.ONLINE);
         return 0;
@@ -123,15 +146,20 @@ public class PentairSerialBridgeHandler extends PentairBaseBridgeHandler {
     protected synchronized void disconnect() {
         updateStatus(ThingStatus.OFFLINE);
 
-        if (thread != null) {
+        // closing the port unblocks a parser waiting in read, so it is closed before waiting for the parser to exit
+        interruptParser();
+
+        if (port != null) {
+            port.removeEventListener();
+        }
+
+        if (input != null) {
             try {
-                thread.interrupt();
-                thread.join(); // wait for thread to complete
-            } catch (InterruptedException e) {
-                // do nothing
+                input.close();
+            } catch (IOException e) {
+                logger.trace("IOException when closing serial input: {}", e);
             }
-            thread = null;
-            parser = null;
+            input = null;
         }
 
         if (reader != null) {
@@ -156,5 +184,76 @@ public class PentairSerialBridgeHandler extends PentairBaseBridgeHandler {
             port.close();
             port = null;
         }
+
+        joinParser();
+    }
+
+    /**
+     * Enables the receive threshold and timeout and registers for data available events
+     *
+     * @return true if the port supports event driven reads
+     */
+    private boolean startEvents() {
+        try {
+            port.enableReceiveThreshold(RECEIVE_THRESHOLD);
+            port.enableReceiveTimeout(RECEIVE_TIMEOUT);
+            port.addEventListener(this);
+            port.notifyOnDataAvailable(true);
+        } catch (UnsupportedCommOperationException | TooManyListenersException e) {
+            logger.debug("Serial port does not support event driven reads: {}", e.getMessage());
+            port.removeEventListener();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads all available bytes in bulk and pushes them into the decoder. Called by the serial port on its event
+     * thread.
+     */
+    @Override
+    public void serialEvent(SerialPortEvent event) {
+        if (event.getEventType() != SerialPortEvent.DATA_AVAILABLE) {
+            return;
+        }
+
+        InputStream in = input;
+        if (in == null) {
+            return;
+        }
+
+        try {
+            do {
+                readbuffer.clear();
+                int n = fillBuffer(in, readbuffer);
+                readbuffer.flip();
+
+                if (n < 0) {
+                    logger.debug("End of stream reached");
+                    lostFromEvent("end of stream");
+                    return;
+                }
+
+                if (n > 0) {
+                    processReceived(n);
+                }
+            } while (in.available() > 0);
+        } catch (IOException e) {
+            logger.trace("I/O error while reading from serial port: {}", e.getMessage());
+            lostFromEvent(e.getMessage());
+        }
+    }
+
+    /**
+     * Reports the loss of the connection detected on the event thread. The tear down runs on another thread, as
+     * removing the listener from within its own event thread can hang.
+     *
+     * @param reason description of the failure
+     */
+    private void lostFromEvent(String reason) {
+        if (input != null) { // null means disconnect is already in progress
+            scheduler.execute(() -> connectionLost(reason));
+        }
     }
 }
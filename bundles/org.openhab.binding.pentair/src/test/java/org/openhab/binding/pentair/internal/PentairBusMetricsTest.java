@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests cases for {@link PentairBusMetrics} and {@link PentairLatencyHistogram}.
+ *
+ * @author Jeff James - initial contribution
+ */
+public class PentairBusMetricsTest {
+
+    @Test
+    public void framesBySourceTest() {
+        PentairBusMetrics metrics = new PentairBusMetrics();
+
+        metrics.onFrame(0x10, 0x02);
+        metrics.onFrame(0x10, 0x02);
+        metrics.onFrame(0x60, 0x07);
+        metrics.onIntellichlorFrame();
+
+        assertEquals(2, metrics.getFrames(0x10, 0x02));
+        assertEquals(0, metrics.getFrames(0x10, 0x07));
+        assertEquals(2, metrics.getFramesFrom(0x10));
+        assertEquals(4, metrics.getFramesDecoded());
+
+        Map<String, String> properties = metrics.toProperties();
+        assertEquals("2", properties.get("frames.10.02"));
+        assertEquals("1", properties.get("frames.60.07"));
+        assertEquals("1", properties.get("intellichlorFrames"));
+    }
+
+    @Test
+    public void histogramTest() {
+        PentairLatencyHistogram histogram = new PentairLatencyHistogram();
+
+        assertEquals(0, histogram.getPercentile(95));
+
+        for (int i = 0; i < 90; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(20));
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(20000, histogram.getMax());
+        assertEquals(127, histogram.getPercentile(50)); // upper end of bucket 64..127 us
+        assertEquals(20000, histogram.getPercentile(95)); // capped by maximum
+    }
+}
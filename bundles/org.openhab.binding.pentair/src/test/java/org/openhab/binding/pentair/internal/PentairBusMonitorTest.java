@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.smarthome.core.util.HexUtils;
+import org.junit.Test;
+
+/**
+ * Tests cases for {@link PentairBusMonitor}.
+ *
+ * @author Jeff James - initial contribution
+ */
+public class PentairBusMonitorTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final PentairPacket STATUS = new PentairPacket(
+            HexUtils.hexToBytes("A5010F10021D0E2200000000000000000300000000000000005D5D0000004A004E000D"));
+
+    @Test
+    public void waitForQuietBusTest() {
+        PentairBusMonitor monitor = new PentairBusMonitor();
+        long t = 1000 * MS;
+
+        monitor.onReceive(t, 10);
+
+        assertTrue(monitor.getTransmitDelay(t + 1 * MS, 12) > 0);
+        assertTrue(monitor.getTransmitDelay(t + 6 * MS, 12) <= 0);
+    }
+
+    @Test
+    public void avoidPredictedBroadcastTest() {
+        PentairBusMonitor monitor = new PentairBusMonitor();
+        long t = 1000 * MS;
+
+        // controller broadcasts status every 2 seconds
+        for (int i = 0; i < 4; i++) {
+            monitor.onFrame(t + i * 2000 * MS, STATUS);
+        }
+        assertEquals(2000, monitor.getBroadcastPeriod());
+
+        long next = t + 4 * 2000 * MS;
+
+        // well before the broadcast the bus is free, just before it the write is held back
+        assertTrue(monitor.getTransmitDelay(next - 1000 * MS, 12) <= 0);
+        assertTrue(monitor.getTransmitDelay(next - 5 * MS, 12) > 0);
+    }
+
+    @Test
+    public void predictAfterMissedBroadcastsTest() {
+        PentairBusMonitor monitor = new PentairBusMonitor();
+        long t = 1000 * MS;
+
+        for (int i = 0; i < 4; i++) {
+            monitor.onFrame(t + i * 2000 * MS, STATUS);
+        }
+
+        // a few broadcasts missed, the prediction still follows the period
+        long next = t + 10 * 2000 * MS;
+        assertTrue(monitor.getTransmitDelay(next - 1000 * MS, 12) <= 0);
+        assertTrue(monitor.getTransmitDelay(next - 5 * MS, 12) > 0);
+    }
+
+    @Test
+    public void controllerSilentTest() {
+        PentairBusMonitor monitor = new PentairBusMonitor();
+        long t = 1000 * MS;
+
+        for (int i = 0; i < 4; i++) {
+            monitor.onFrame(t + i * 2000 * MS, STATUS);
+        }
+
+        // no broadcasts are predicted once the controller went silent
+        long next = t + 6000 * MS + PentairBusMonitor.CONTROLLER_TIMEOUT + 2000 * MS;
+        assertTrue(monitor.getTransmitDelay(next - 5 * MS, 12) <= 0);
+    }
+
+    @Test
+    public void collisionTest() {
+        PentairBusMonitor monitor = new PentairBusMonitor();
+        long t = 1000 * MS;
+
+        monitor.onChecksumError(t);
+        monitor.onTransmit(t + 100 * MS, 12);
+        monitor.onChecksumError(t + 110 * MS);
+
+        assertEquals(1, monitor.getCollisions());
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.eclipse.smarthome.core.util.HexUtils;
+import org.junit.Test;
+
+/**
+ * Tests cases for {@link PentairCaptureWriter} and {@link PentairCaptureReader}.
+ *
+ * @author Jeff James - initial contribution
+ */
+public class PentairCaptureTest {
+
+    @Test
+    public void roundTripTest() throws IOException {
+        Path file = Files.createTempFile("pentair", ".cap");
+        byte[] chunk1 = HexUtils.hexToBytes("FF00FFA50060100700011C");
+        byte[] chunk2 = HexUtils.hexToBytes("1002500000621003");
+
+        try {
+            try (PentairCaptureWriter writer = new PentairCaptureWriter(file)) {
+                long now = System.nanoTime();
+                writer.write(now, chunk1, 0, chunk1.length);
+                writer.write(now + 1000000, chunk2, 2, chunk2.length - 2);
+            }
+
+            try (PentairCaptureReader reader = new PentairCaptureReader(file)) {
+                ByteBuffer buf = ByteBuffer.allocate(64);
+
+                assertTrue(reader.hasNext());
+                long t1 = reader.peekTimestamp();
+                assertEquals(chunk1.length, reader.read(buf));
+                assertArrayEquals(chunk1, Arrays.copyOf(buf.array(), buf.position()));
+
+                buf.clear();
+                long t2 = reader.peekTimestamp();
+                assertEquals(chunk2.length - 2, reader.read(buf));
+                assertEquals(1000000, t2 - t1);
+
+                assertFalse(reader.hasNext());
+                assertEquals(-1, reader.read(buf));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void appendTest() throws IOException {
+        Path file = Files.createTempFile("pentair", ".cap");
+        Files.delete(file);
+        byte[] chunk1 = HexUtils.hexToBytes("FF00FFA50060100700011C");
+        byte[] chunk2 = HexUtils.hexToBytes("1002500000621003");
+
+        try {
+            try (PentairCaptureWriter writer = new PentairCaptureWriter(file)) {
+                long now = System.nanoTime();
+                writer.write(now, chunk1, 0, chunk1.length);
+                writer.write(now + 1000000, chunk1, 0, chunk1.length);
+            }
+
+            // the unused space of the last segment is cut off on close
+            long size = PentairCaptureWriter.HEADER_SIZE
+                    + 2 * (PentairCaptureWriter.RECORD_HEADER_SIZE + chunk1.length);
+            assertEquals(size, Files.size(file));
+
+            // reopening continues after the records of the first capture instead of replacing them
+            try (PentairCaptureWriter writer = new PentairCaptureWriter(file)) {
+                assertEquals(size, writer.size());
+                writer.write(System.nanoTime(), chunk2, 0, chunk2.length);
+                size = writer.size();
+            }
+            assertEquals(size, Files.size(file));
+
+            try (PentairCaptureReader reader = new PentairCaptureReader(file)) {
+                ByteBuffer buf = ByteBuffer.allocate(64);
+                long last = 0;
+
+                for (int i = 0; i < 3; i++) {
+                    assertTrue(reader.hasNext());
+                    assertTrue(reader.peekTimestamp() >= last);
+                    last = reader.peekTimestamp();
+
+                    buf.clear();
+                    assertEquals(i < 2 ? chunk1.length : chunk2.length, reader.read(buf));
+                }
+
+                assertArrayEquals(chunk2, Arrays.copyOf(buf.array(), buf.position()));
+                assertFalse(reader.hasNext());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void appendToOtherFileTest() throws IOException {
+        Path file = Files.createTempFile("pentair", ".cap");
+        byte[] contents = HexUtils.hexToBytes("0102030405060708090A0B0C0D0E0F101112");
+
+        try {
+            Files.write(file, contents);
+            try {
+                new PentairCaptureWriter(file).close();
+                fail("expected IOException");
+            } catch (IOException e) {
+                // a file which is not a capture must be left alone
+                assertArrayEquals(contents, Files.readAllBytes(file));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void notACaptureFileTest() throws IOException {
+        Path file = Files.createTempFile("pentair", ".cap");
+
+        try {
+            Files.write(file, new byte[32]);
+            new PentairCaptureReader(file).close();
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
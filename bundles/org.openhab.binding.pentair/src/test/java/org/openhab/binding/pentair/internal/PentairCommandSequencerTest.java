@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests cases for {@link PentairCommandSequencer}.
+ *
+ * @author Jeff James - initial contribution
+ */
+public class PentairCommandSequencerTest {
+
+    private static final byte[] REMOTE = { (byte) 0xA5, 0x00, 0x60, 0x00, 0x04, 0x01, (byte) 0xFF };
+    private static final byte[] RUN = { (byte) 0xA5, 0x00, 0x60, 0x00, 0x06, 0x01, 0x0A };
+    private static final byte[] STATUS = { (byte) 0xA5, 0x00, 0x60, 0x00, 0x07, 0x00 };
+
+    private final List<byte[]> written = new ArrayList<>();
+
+    private ScheduledExecutorService scheduler;
+    private PentairAdaptiveTimeout timeout;
+    private PentairCommandSequencer sequencer;
+
+    @Before
+    public void setUp() {
+        written.clear();
+        scheduler = new ScheduledThreadPoolExecutor(1);
+        timeout = new PentairAdaptiveTimeout(10000, 100, 10000);
+        sequencer = new PentairCommandSequencer(scheduler, (c, onwritten) -> {
+            synchronized (written) {
+                written.add(c);
+            }
+            onwritten.run();
+        }, timeout);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void advanceOnAckTest() {
+        sequencer.start(REMOTE, RUN, STATUS);
+        assertEquals(1, written.size());
+
+        sequencer.onResponse(0x07); // not the expected ack
+        assertEquals(1, written.size());
+
+        sequencer.onResponse(0x04);
+        assertEquals(2, written.size());
+        assertSame(RUN, written.get(1));
+
+        sequencer.onResponse(0x06);
+        sequencer.onResponse(0x07);
+        assertEquals(3, written.size());
+        assertFalse(sequencer.isBusy());
+
+        // timeout is learned from the round trip times, which are far below the initial timeout
+        assertTrue(timeout.getTimeout() < 10000);
+    }
+
+    @Test
+    public void retryOnTimeoutTest() throws InterruptedException {
+        timeout = new PentairAdaptiveTimeout(20, 20, 20);
+        sequencer = new PentairCommandSequencer(scheduler, (c, onwritten) -> {
+            synchronized (written) {
+                written.add(c);
+            }
+            onwritten.run();
+        }, timeout);
+
+        sequencer.start(STATUS);
+
+        for (int i = 0; i < 100 && sequencer.isBusy(); i++) {
+            Thread.sleep(10);
+        }
+
+        assertFalse(sequencer.isBusy());
+        synchronized (written) {
+            assertEquals(1 + PentairCommandSequencer.MAX_RETRIES, written.size());
+        }
+    }
+
+    @Test
+    public void timeoutStartsWhenWrittenTest() throws InterruptedException {
+        List<Runnable> queued = new ArrayList<>();
+
+        timeout = new PentairAdaptiveTimeout(20, 20, 20);
+        sequencer = new PentairCommandSequencer(scheduler, (c, onwritten) -> {
+            synchronized (written) {
+                written.add(c);
+                queued.add(onwritten);
+            }
+        }, timeout);
+
+        sequencer.start(STATUS);
+
+        // held back by the bridge's writer far longer than the timeout, which must not run out meanwhile
+        Thread.sleep(100);
+        assertTrue(sequencer.isBusy());
+        Runnable onwritten;
+        synchronized (written) {
+            assertEquals(1, written.size());
+            onwritten = queued.get(0);
+        }
+        onwritten.run();
+
+        for (int i = 0; i < 100; i++) {
+            synchronized (written) {
+                if (written.size() == 2) {
+                    break;
+                }
+            }
+            Thread.sleep(10);
+        }
+
+        // timed out once the command was written, so it is retried
+        synchronized (written) {
+            assertEquals(2, written.size());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import static org.junit.Assert.*;
+
+import org.eclipse.smarthome.core.util.HexUtils;
+import org.junit.Test;
+
+/**
+ * Tests cases for {@link PentairDispatchRing}.
+ *
+ * @author Jeff James - initial contribution
+ */
+public class PentairDispatchRingTest {
+
+    private static PentairPacket packet(String hex) {
+        return new PentairPacket(HexUtils.hexToBytes(hex));
+    }
+
+    @Test
+    public void fifoOrderTest() throws InterruptedException {
+        PentairDispatchRing ring = new PentairDispatchRing(4);
+        PentairPacket p1 = packet("A50060100700");
+        PentairPacket p2 = packet("A5001060070F0A0200021C");
+
+        assertNull(ring.offer(p1));
+        assertNull(ring.offer(p2));
+        assertEquals(2, ring.depth());
+
+        assertSame(p1, ring.take());
+        assertSame(p2, ring.take());
+        assertEquals(0, ring.depth());
+    }
+
+    @Test
+    public void coalesceWhenFullTest() throws InterruptedException {
+        PentairDispatchRing ring = new PentairDispatchRing(2);
+        PentairPacket status1 = packet("A5001060070F0A0200021C");
+        PentairPacket ack = packet("A50010600401FF");
+        PentairPacket status2 = packet("A5001060070F0A0200021D");
+
+        ring.offer(status1);
+        ring.offer(ack);
+
+        // newer status from same source replaces the queued one in place
+        assertSame(status1, ring.offer(status2));
+        assertEquals(1, ring.getCoalesced());
+        assertEquals(0, ring.getDropped());
+
+        assertSame(status2, ring.take());
+        assertSame(ack, ring.take());
+    }
+
+    @Test
+    public void coalesceSameDestinationTest() throws InterruptedException {
+        PentairDispatchRing ring = new PentairDispatchRing(2);
+        PentairPacket pump1 = packet("A5006010010402C405DC");
+        PentairPacket pump2 = packet("A5006110010402C405DC");
+        PentairPacket pump1new = packet("A5006010010402C409C4");
+
+        ring.offer(pump1);
+        ring.offer(pump2);
+
+        // commands of the controller to different pumps are different packets
+        assertSame(pump1, ring.offer(pump1new));
+        assertEquals(1, ring.getCoalesced());
+
+        assertSame(pump1new, ring.take());
+        assertSame(pump2, ring.take());
+    }
+
+    @Test
+    public void recordsNotCoalescedTest() throws InterruptedException {
+        PentairDispatchRing ring = new PentairDispatchRing(2);
+        PentairPacket schedule1 = packet("A51E0F1011070106");
+        PentairPacket schedule2 = packet("A51E0F1011070206");
+        PentairPacket schedule3 = packet("A51E0F1011070306");
+
+        ring.offer(schedule1);
+        ring.offer(schedule2);
+
+        // each schedule is a record of its own, so the oldest is dropped rather than replaced by another schedule
+        assertSame(schedule1, ring.offer(schedule3));
+        assertEquals(0, ring.getCoalesced());
+        assertEquals(1, ring.getDropped());
+
+        assertSame(schedule2, ring.take());
+        assertSame(schedule3, ring.take());
+    }
+
+    @Test
+    public void dropOldestWhenFullTest() throws InterruptedException {
+        PentairDispatchRing ring = new PentairDispatchRing(2);
+        PentairPacket p1 = packet("A50060100700");
+        PentairPacket p2 = packet("A50010600401FF");
+        PentairPacket p3 = packet("A5001060070F0A0200021C");
+
+        ring.offer(p1);
+        ring.offer(p2);
+
+        assertSame(p1, ring.offer(p3));
+        assertEquals(1, ring.getDropped());
+        assertEquals(2, ring.depth());
+
+        assertSame(p2, ring.take());
+        assertSame(p3, ring.take());
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests cases for {@link PentairFlightRecorder}.
+ *
+ * @author Jeff James - initial contribution
+ */
+public class PentairFlightRecorderTest {
+
+    @Test
+    public void wraparoundTest() {
+        PentairFlightRecorder recorder = new PentairFlightRecorder(4);
+        byte[] frame = new byte[1];
+
+        assertTrue(recorder.dump().isEmpty());
+
+        for (int i = 0; i < 6; i++) {
+            frame[0] = (byte) i;
+            recorder.record(PentairFlightRecorder.Kind.RX, i * 1000000L, frame, 0, 1);
+        }
+
+        List<String> lines = recorder.dump();
+
+        assertEquals(6, recorder.getCount());
+        assertEquals(4, lines.size());
+        assertEquals("-3.000 ms RX  02", lines.get(0).trim());
+        assertEquals("-0.000 ms RX  05", lines.get(3).trim());
+    }
+
+    @Test
+    public void decoderTest() {
+        PentairFlightRecorder recorder = new PentairFlightRecorder(8);
+        PentairFrameDecoder decoder = new PentairFrameDecoder(new PentairFrameDecoder.Listener() {
+            @Override
+            public void onPentairPacket(PentairPacket p) {
+            }
+
+            @Override
+            public void onIntellichlorPacket(PentairPacketIntellichlor p) {
+            }
+        });
+        decoder.setRecorder(recorder);
+
+        byte[] bad = PentairTestFrames.pentair(0x10, 0x60, 0x07).clone();
+        bad[bad.length - 1]++;
+
+        decoder.decode(ByteBuffer.wrap(PentairTestFrames.pentair(0x10, 0x60, 0x07)), 0);
+        decoder.decode(ByteBuffer.wrap(bad), 0);
+
+        List<String> lines = recorder.dump();
+
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).trim().endsWith("RX  A5 00 10 60 07 00"));
+        assertTrue(lines.get(1).contains("ERR"));
+    }
+}
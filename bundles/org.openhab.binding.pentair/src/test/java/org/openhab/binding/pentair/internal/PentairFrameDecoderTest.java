@@ -0,0 +1,255 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.smarthome.core.util.HexUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests cases for {@link PentairFrameDecoder}.
+ *
+ * @author Jeff James - initial contribution
+ */
+public class PentairFrameDecoderTest {
+
+    private static final String PUMP_STATUS_REQUEST = "FF00FFA50060100700011C";
+    private static final String IC_SALTOUTPUT = "1002500000621003";
+    private static final String IC_SALINITY = "100200010000131003";
+
+    private final List<String> packets = new ArrayList<>();
+    private final List<PentairPacket> held = new ArrayList<>();
+
+    private PentairFrameDecoder decoder;
+
+    @Before
+    public void setUp() {
+        packets.clear();
+        held.clear();
+        decoder = new PentairFrameDecoder(new PentairFrameDecoder.Listener() {
+            @Override
+            public void onPentairPacket(PentairPacket p) {
+                packets.add(p.toString());
+                held.add(p);
+            }
+
+            @Override
+            public void onIntellichlorPacket(PentairPacketIntellichlor p) {
+                packets.add(p.toString());
+            }
+        });
+    }
+
+    private void decode(String hex) {
+        byte[] bytes = HexUtils.hexToBytes(hex);
+        decoder.decode(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void decodePentairPacketTest() {
+        decode(PUMP_STATUS_REQUEST);
+
+        assertEquals(1, packets.size());
+        assertEquals("A5 00 60 10 07 00 ", packets.get(0));
+    }
+
+    @Test
+    public void decodeIntellichlorPacketsTest() {
+        decode(IC_SALTOUTPUT + IC_SALINITY);
+
+        assertEquals(2, packets.size());
+        assertEquals("10 02 50 00 00 62 10 03 ", packets.get(0));
+        assertEquals("10 02 00 01 00 00 13 10 03 ", packets.get(1));
+    }
+
+    @Test
+    public void decodeIntellichlorEscapedTest() {
+        // salt output of 16%, the 0x10 data byte is escaped
+        byte[] frame = PentairTestFrames.intellichlor(0x50, 0x11, 0x10);
+        decoder.decode(frame, 0, frame.length);
+
+        assertEquals(9, frame.length);
+        assertEquals(1, packets.size());
+        assertEquals("10 02 50 11 10 83 10 03 ", packets.get(0));
+    }
+
+    @Test
+    public void buildIntellichlorFrameTest() {
+        byte[] frame = PentairPacketIntellichlor.buildFrame(PentairPacketIntellichlor.CHLORINATOR,
+                PentairPacketIntellichlor.SET_SALTOUTPUT, 0x10);
+
+        assertArrayEquals(PentairTestFrames.intellichlor(0x50, 0x11, 0x10), frame);
+
+        decoder.decode(frame, 0, frame.length);
+        assertEquals(1, packets.size());
+    }
+
+    @Test
+    public void decodeIntellichlorAnyLengthTest() {
+        byte[] frame = PentairTestFrames.intellichlor(0x00, 0x03, 0x00, 0x49, 0x6E, 0x74, 0x65, 0x6C, 0x6C, 0x69);
+        decoder.decode(frame, 0, frame.length);
+        decode(IC_SALTOUTPUT);
+
+        assertEquals(2, packets.size());
+        assertEquals("10 02 00 03 00 49 6E 74 65 6C 6C 69 E6 10 03 ", packets.get(0));
+        assertEquals(0, decoder.getResyncs());
+    }
+
+    @Test
+    public void invalidIntellichlorTrailerTest() {
+        // unescaped 0x10 inside a frame, the frame after it is recovered
+        decode("10025010" + PUMP_STATUS_REQUEST);
+
+        assertEquals(1, packets.size());
+        assertEquals("A5 00 60 10 07 00 ", packets.get(0));
+    }
+
+    @Test
+    public void decodeSplitChunksTest() {
+        String stream = IC_SALTOUTPUT + PUMP_STATUS_REQUEST + IC_SALINITY;
+
+        // feed one byte at a time, frame state must survive every chunk boundary
+        for (int i = 0; i < stream.length(); i += 2) {
+            decode(stream.substring(i, i + 2));
+        }
+
+        assertEquals(3, packets.size());
+    }
+
+    @Test
+    public void checksumErrorTest() {
+        decode("FF00FFA50060100700011D" + PUMP_STATUS_REQUEST);
+
+        assertEquals(1, packets.size());
+    }
+
+    @Test
+    public void noiseBeforePacketTest() {
+        decode("0012FFFF34FF" + PUMP_STATUS_REQUEST);
+
+        assertEquals(1, packets.size());
+    }
+
+    @Test
+    public void frameInsideCorruptFrameTest() {
+        // truncated frame whose checksum bytes and trailing noise swallow the start of the next frame
+        decode("FF00FFA50060100702" + PUMP_STATUS_REQUEST);
+
+        assertEquals(1, packets.size());
+        assertEquals("A5 00 60 10 07 00 ", packets.get(0));
+        assertEquals(1, decoder.getChecksumErrors());
+        assertEquals(1, decoder.getResyncs());
+    }
+
+    @Test
+    public void frameAfterInvalidLengthTest() {
+        decode("FF00FFA5006010073F" + PUMP_STATUS_REQUEST + IC_SALTOUTPUT);
+
+        assertEquals(2, packets.size());
+        assertEquals("A5 00 60 10 07 00 ", packets.get(0));
+        assertEquals(1, decoder.getResyncs());
+    }
+
+    @Test
+    public void frameAfterMissingA5Test() {
+        decode("FF00FF" + PUMP_STATUS_REQUEST);
+
+        assertEquals(1, packets.size());
+        assertEquals(1, decoder.getResyncs());
+    }
+
+    @Test
+    public void frameAfterFalsePreambleTest() {
+        // the FF of the false start FF00FF is the start of the real preamble
+        decode("FF00" + PUMP_STATUS_REQUEST);
+
+        assertEquals(1, packets.size());
+        assertEquals("A5 00 60 10 07 00 ", packets.get(0));
+    }
+
+    @Test
+    public void frameAfterAnyNoiseTest() {
+        int[] noise = PentairTestFrames.NOISE;
+        byte[] frame = HexUtils.hexToBytes(PUMP_STATUS_REQUEST);
+
+        // every noise prefix of up to three bytes, the frame after it must not be lost
+        for (int n = 0; n < noise.length * noise.length * noise.length; n++) {
+            int[] prefix = { noise[n % noise.length], noise[n / noise.length % noise.length],
+                    noise[n / noise.length / noise.length] };
+
+            setUp();
+            for (int c : prefix) {
+                decoder.decode(new byte[] { (byte) c }, 0, 1);
+            }
+            decoder.decode(frame, 0, frame.length);
+
+            assertEquals(String.format("%02X%02X%02X", prefix[0], prefix[1], prefix[2]), 1, packets.size());
+        }
+    }
+
+    @Test
+    public void noisyStreamTest() {
+        int[] noise = PentairTestFrames.NOISE;
+        byte[] frame = HexUtils.hexToBytes(PUMP_STATUS_REQUEST);
+        Random random = new Random(1);
+
+        for (int i = 0; i < 1000; i++) {
+            int n = 1 + random.nextInt(8);
+            for (int j = 0; j < n; j++) {
+                decoder.decode(new byte[] { (byte) noise[random.nextInt(noise.length)] }, 0, 1);
+            }
+            decoder.decode(frame, 0, frame.length);
+        }
+
+        // false starts in the noise may swallow bytes of a frame, but every frame has to be recovered
+        assertEquals(1000, packets.stream().filter("A5 00 60 10 07 00 "::equals).count());
+    }
+
+    @Test
+    public void heldPacketsDoNotAliasTest() {
+        decode(PUMP_STATUS_REQUEST + "FF00FFA50010600401FF0219");
+
+        // neither packet has been released, so the second frame must not overwrite the first
+        assertEquals(2, held.size());
+        assertEquals("A5 00 60 10 07 00 ", held.get(0).toString());
+        assertEquals("A5 00 10 60 04 01 FF ", held.get(1).toString());
+    }
+
+    @Test
+    public void releasedPacketReturnsToPoolTest() {
+        PentairPacketPool<PentairPacket> pool = decoder.getPacketPool();
+
+        decode(PUMP_STATUS_REQUEST);
+        assertEquals(PentairFrameDecoder.POOL_SIZE - 1, pool.available());
+
+        decoder.release(held.get(0));
+        assertEquals(PentairFrameDecoder.POOL_SIZE, pool.available());
+        assertEquals(0, pool.getMisses());
+    }
+
+    @Test
+    public void testFramesTest() {
+        byte[][] frames = { PentairTestFrames.CONTROLLER_STATUS, PentairTestFrames.PUMP_STATUS,
+                PentairTestFrames.IC_SALTOUTPUT, PentairTestFrames.IC_SALINITY };
+
+        for (byte[] frame : frames) {
+            decoder.decode(frame, 0, frame.length);
+        }
+
+        // frames used by benchmarks and the emulator must be valid
+        assertEquals(4, packets.size());
+        assertEquals(0, decoder.getChecksumErrors());
+    }
+}
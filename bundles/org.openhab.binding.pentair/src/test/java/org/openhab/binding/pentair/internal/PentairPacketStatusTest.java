@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests cases for {@link PentairPacketStatus}.
+ *
+ * @author Jeff James - initial contribution
+ */
+public class PentairPacketStatusTest {
+
+    /**
+     * Strips preamble and checksum of a frame, as the decoder does
+     */
+    private static PentairPacket packet(byte[] frame) {
+        return new PentairPacket(Arrays.copyOfRange(frame, 3, frame.length - 2));
+    }
+
+    @Test
+    public void parseTest() {
+        PentairPacketStatus ps = new PentairPacketStatus();
+
+        ps.parsePacket(packet(PentairTestFrames.CONTROLLER_STATUS));
+
+        assertTrue(ps.pool);
+        assertTrue(ps.aux1);
+        assertFalse(ps.spa);
+        assertEquals(78, ps.pooltemp);
+        assertEquals(80, ps.airtemp);
+    }
+
+    @Test
+    public void sameStatusTest() {
+        PentairPacketStatus ps = new PentairPacketStatus();
+        PentairPacket p = packet(PentairTestFrames.CONTROLLER_STATUS);
+
+        ps.parsePacket(p);
+        assertTrue(ps.sameStatus(p));
+
+        // time of day is ignored
+        p.buf[PentairPacket.STARTOFDATA + 1]++;
+        assertTrue(ps.sameStatus(p));
+
+        // pool temperature
+        p.buf[PentairPacket.STARTOFDATA + 14]++;
+        assertFalse(ps.sameStatus(p));
+    }
+}
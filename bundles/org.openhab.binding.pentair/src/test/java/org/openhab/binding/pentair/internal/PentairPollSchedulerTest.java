@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import static org.junit.Assert.*;
+import static org.openhab.binding.pentair.internal.PentairPollScheduler.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests cases for {@link PentairPollScheduler}.
+ *
+ * @author Jeff James - initial contribution
+ */
+public class PentairPollSchedulerTest {
+    private final List<String> polls = new ArrayList<>();
+    private final List<Long> polltimes = new ArrayList<>();
+    private long now;
+
+    private final PentairPollScheduler<String> poller = new PentairPollScheduler<>(d -> {
+        polls.add(d);
+        polltimes.add(now);
+    });
+
+    private void run(long duration) {
+        long end = now + duration;
+
+        while (now < end) {
+            now += TICK;
+            poller.tick(now);
+        }
+    }
+
+    @Test
+    public void staggerTest() {
+        poller.add("pump1", now);
+        poller.add("pump2", now);
+        poller.add("pump3", now);
+
+        run(BASE_INTERVAL);
+
+        assertEquals(3, polls.size());
+        assertEquals(BASE_INTERVAL / 3, polltimes.get(1) - polltimes.get(0));
+        assertEquals(BASE_INTERVAL / 3, polltimes.get(2) - polltimes.get(1));
+
+        // without responses every pump is polled once per interval, so load is linear in the number of pumps
+        run(BASE_INTERVAL * 10);
+        assertEquals(33, polls.size());
+    }
+
+    @Test
+    public void adaptiveTest() {
+        poller.add("pump1", now);
+        run(FIRST_POLL_DELAY);
+        assertEquals(1, polls.size());
+
+        poller.onStatus("pump1", now, 1000, 100);
+        poller.onStatus("pump1", now, 2000, 300);
+        assertEquals(MIN_INTERVAL, poller.getInterval("pump1"));
+
+        for (int i = 0; i < 10; i++) {
+            poller.onStatus("pump1", now, 2000, 300);
+        }
+        assertEquals(MAX_INTERVAL, poller.getInterval("pump1"));
+    }
+
+    @Test
+    public void snoopedStatusTest() {
+        poller.add("pump1", now);
+
+        // status polled by someone else just before our poll would be due postpones it
+        run(FIRST_POLL_DELAY - TICK);
+        poller.onStatus("pump1", now, 2000, 300);
+        run(BASE_INTERVAL - TICK);
+
+        assertTrue(polls.isEmpty());
+    }
+
+    @Test
+    public void holdoffTest() {
+        long window = BASE_INTERVAL * 2;
+
+        poller.add("pump1", now, window);
+
+        // another master polls the pump, so we never do
+        for (int i = 0; i < 10; i++) {
+            run(BASE_INTERVAL / 2);
+            poller.onStatus("pump1", now, 2000, 300);
+        }
+        assertTrue(polls.isEmpty());
+
+        // the other master stops polling, we take over once the window has passed
+        run(window);
+        assertEquals(1, polls.size());
+        assertEquals(window, polltimes.get(0) - (BASE_INTERVAL / 2) * 10);
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import org.eclipse.smarthome.core.util.HexUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests cases for {@link PentairQueryPipeline}.
+ *
+ * @author Jeff James - initial contribution
+ */
+public class PentairQueryPipelineTest {
+
+    private final List<byte[]> written = new ArrayList<>();
+
+    private ScheduledExecutorService scheduler;
+    private PentairQueryPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        written.clear();
+        scheduler = new ScheduledThreadPoolExecutor(1);
+        pipeline = new PentairQueryPipeline(scheduler, (c, onwritten) -> {
+            written.add(c);
+            onwritten.run();
+        }, new PentairAdaptiveTimeout(10000, 100, 10000), 2);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    private static byte[] schedule(int num) {
+        return new byte[] { (byte) 0xA5, 0x01, 0x10, 0x22, (byte) 0xD1, 0x01, (byte) num };
+    }
+
+    @Test
+    public void windowTest() {
+        for (int i = 1; i <= 4; i++) {
+            pipeline.add(schedule(i), 17, i);
+        }
+
+        // only the window is written up front
+        assertEquals(2, written.size());
+
+        // response to schedule 2 completes it and releases the next query
+        pipeline.onResponse(new PentairPacket(HexUtils.hexToBytes("A51E0F1011070206")));
+        assertEquals(3, written.size());
+        assertEquals(3, written.get(2)[6]);
+
+        // response for a schedule not in flight is ignored
+        pipeline.onResponse(new PentairPacket(HexUtils.hexToBytes("A51E0F1011070406")));
+        assertEquals(3, written.size());
+
+        pipeline.onResponse(new PentairPacket(HexUtils.hexToBytes("A51E0F1011070106")));
+        pipeline.onResponse(new PentairPacket(HexUtils.hexToBytes("A51E0F1011070306")));
+        pipeline.onResponse(new PentairPacket(HexUtils.hexToBytes("A51E0F1011070406")));
+        assertEquals(4, written.size());
+        assertTrue(pipeline.isComplete());
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import static org.junit.Assert.*;
+
+import org.eclipse.smarthome.core.types.UnDefType;
+import org.junit.Test;
+
+/**
+ * Tests cases for {@link PentairStates}.
+ *
+ * @author Jeff James - initial contribution
+ */
+public class PentairStatesTest {
+
+    @Test
+    public void decimalCachedTest() {
+        assertSame(PentairStates.decimal(78), PentairStates.decimal(78));
+        assertSame(PentairStates.decimal(-10), PentairStates.decimal(-10));
+        assertSame(PentairStates.decimal(3450), PentairStates.decimal(3450));
+        assertNotSame(PentairStates.decimal(100000), PentairStates.decimal(100000));
+    }
+
+    @Test
+    public void domainTest() {
+        assertSame(PentairStates.HEATMODE.get(1), PentairStates.of(PentairStates.HEATMODE, 1));
+        assertSame(UnDefType.UNDEF, PentairStates.of(PentairStates.HEATMODE, 7));
+    }
+}
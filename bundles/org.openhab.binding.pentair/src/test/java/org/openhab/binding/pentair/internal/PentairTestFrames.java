@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+/**
+ * Builds raw Pentair and Intellichlor frames, as they appear on the bus, for tests and benchmarks.
+ *
+ * @author Jeff James - initial contribution
+ */
+public class PentairTestFrames {
+    /** action 2 status broadcast of an EasyTouch controller (pool and aux1 on, 78F pool, 80F air) */
+    public static final byte[] CONTROLLER_STATUS = pentair(0x0F, 0x10, 0x02, 0x0C, 0x1D, 0x22, 0x00, 0x00, 0x00,
+            0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x4E, 0x4E, 0x00, 0x00, 0x50, 0x4E, 0x00, 0x00, 0x00, 0x00,
+            0x00, 0x00, 0x00, 0x00, 0x00);
+    /** pump status of a running IntelliFlo at 0x60 (1500 W, 2500 rpm) */
+    public static final byte[] PUMP_STATUS = pentair(0x10, 0x60, 0x07, 0x0A, 0x00, 0x02, 0x05, 0xDC, 0x09, 0xC4,
+            0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x0C, 0x1D);
+    /** Intellichlor salt output set point of 50% */
+    public static final byte[] IC_SALTOUTPUT = intellichlor(0x50, 0x11, 0x32);
+    /** Intellichlor salinity report of 3200 ppm */
+    public static final byte[] IC_SALINITY = intellichlor(0x00, 0x12, 0x40, 0x00);
+    /** noise bytes, weighted towards the bytes of the start sequences so noise produces false starts */
+    public static final int[] NOISE = { 0x00, 0x01, 0x02, 0x03, 0x0F, 0x10, 0x10, 0x50, 0x7F, 0xA5, 0xFF, 0xFF, 0xFF };
+
+    /**
+     * Builds a Pentair frame with preamble and checksum
+     *
+     * @param dest destination address
+     * @param source source address
+     * @param action action
+     * @param data data bytes
+     * @return frame
+     */
+    public static byte[] pentair(int dest, int source, int action, int... data) {
+        return pentair(0x00, dest, source, action, data);
+    }
+
+    /**
+     * Builds a Pentair frame with preamble and checksum
+     *
+     * @param version byte following 0xA5, 0x00 for pumps, the controller uses a non zero value
+     * @param dest destination address
+     * @param source source address
+     * @param action action
+     * @param data data bytes
+     * @return frame
+     */
+    public static byte[] pentair(int version, int dest, int source, int action, int[] data) {
+        byte[] frame = new byte[data.length + 11];
+        int chksum = 0;
+
+        frame[0] = (byte) 0xFF;
+        frame[1] = 0x00;
+        frame[2] = (byte) 0xFF;
+        frame[3] = (byte) 0xA5;
+        frame[4] = (byte) version;
+        frame[5] = (byte) dest;
+        frame[6] = (byte) source;
+        frame[7] = (byte) action;
+        frame[8] = (byte) data.length;
+        for (int i = 0; i < data.length; i++) {
+            frame[9 + i] = (byte) data[i];
+        }
+
+        for (int i = 3; i < data.length + 9; i++) {
+            chksum += frame[i] & 0xFF;
+        }
+        frame[data.length + 9] = (byte) (chksum >> 8);
+        frame[data.length + 10] = (byte) chksum;
+
+        return frame;
+    }
+
+    /**
+     * Builds an Intellichlor frame with checksum and trailer. 0x10 bytes within the frame are escaped as 10 10.
+     *
+     * @param data data bytes, starting with the destination
+     * @return frame
+     */
+    public static byte[] intellichlor(int... data) {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        int chksum = 0x10 + 0x02;
+
+        frame.write(0x10);
+        frame.write(0x02);
+        for (int b : data) {
+            escape(frame, b);
+            chksum += b;
+        }
+        escape(frame, chksum & 0xFF);
+        frame.write(0x10);
+        frame.write(0x03);
+
+        return frame.toByteArray();
+    }
+
+    private static void escape(ByteArrayOutputStream frame, int b) {
+        frame.write(b);
+        if (b == 0x10) {
+            frame.write(0x10);
+        }
+    }
+
+    /**
+     * Builds a stream of frames picked at random, with random noise between frames and a share of frames corrupted so
+     * their checksum fails. The noise includes the bytes of the start sequences, so it also produces false starts. The
+     * stream is reproducible for a given seed.
+     *
+     * @param size approximate size of the stream in bytes
+     * @param noise probability of noise bytes before a frame (0-1)
+     * @param errors probability of a frame being corrupted (0-1)
+     * @param seed seed of the random generator
+     * @return stream of bytes
+     */
+    public static byte[] stream(int size, double noise, double errors, long seed) {
+        byte[][] frames = { CONTROLLER_STATUS, PUMP_STATUS, IC_SALTOUTPUT, IC_SALINITY };
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size + 64);
+        Random random = new Random(seed);
+
+        while (out.size() < size) {
+            if (random.nextDouble() < noise) {
+                int n = 1 + random.nextInt(8);
+                for (int i = 0; i < n; i++) {
+                    out.write(NOISE[random.nextInt(NOISE.length)]);
+                }
+            }
+
+            byte[] frame = frames[random.nextInt(frames.length)];
+            if (random.nextDouble() < errors) {
+                frame = frame.clone();
+                frame[frame.length - 3] ^= 0x01; // flip a bit in front of the checksum
+            }
+            out.write(frame, 0, frame.length);
+        }
+
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests cases for {@link PentairTimerWheel}.
+ *
+ * @author Jeff James - initial contribution
+ */
+public class PentairTimerWheelTest {
+    private static final long TICK = TimeUnit.SECONDS.toNanos(1);
+    private static final int SLOTS = 8;
+
+    private final List<String> expired = new ArrayList<>();
+    private final List<Long> expiretimes = new ArrayList<>();
+    private long now = TimeUnit.HOURS.toNanos(1);
+
+    private PentairTimerWheel<String> wheel;
+
+    public PentairTimerWheelTest() {
+        wheel = new PentairTimerWheel<>(SLOTS, TICK, item -> {
+            expired.add(item);
+            expiretimes.add(now);
+
+            if (item.startsWith("repeat")) {
+                wheel.schedule(item, now, 4 * TICK);
+            }
+        });
+    }
+
+    private void run(long duration) {
+        long end = now + duration;
+
+        while (now < end) {
+            now += TICK;
+            wheel.tick(now);
+        }
+    }
+
+    @Test
+    public void expireTest() {
+        long start = now;
+
+        wheel.schedule("a", now, 3 * TICK);
+        wheel.schedule("b", now, 20 * TICK); // beyond the wheel span
+
+        run(5 * TICK);
+        assertEquals(1, expired.size());
+        assertEquals(3 * TICK, expiretimes.get(0) - start);
+
+        run(20 * TICK);
+        assertEquals(2, expired.size());
+        assertEquals("b", expired.get(1));
+        assertEquals(20 * TICK, expiretimes.get(1) - start);
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void cancelAndRescheduleTest() {
+        wheel.schedule("a", now, 3 * TICK);
+        wheel.schedule("b", now, 3 * TICK);
+        wheel.cancel("a");
+        wheel.schedule("b", now, 6 * TICK); // replaces the first timer of b
+
+        run(5 * TICK);
+        assertEquals(0, expired.size());
+
+        run(5 * TICK);
+        assertEquals(1, expired.size());
+        assertEquals("b", expired.get(0));
+    }
+
+    @Test
+    public void repeatTest() {
+        wheel.schedule("repeat1", now, 4 * TICK);
+        wheel.schedule("repeat2", now, 2 * TICK);
+
+        run(40 * TICK);
+
+        // expire callback sets the timer again, so each item fires once per 4 ticks
+        assertEquals(20, expired.size());
+        assertFalse(wheel.isEmpty());
+    }
+
+    @Test
+    public void pauseTest() {
+        wheel.schedule("a", now, 3 * TICK);
+        wheel.schedule("b", now, 5 * TICK);
+
+        // a tick delayed by far more than the wheel span still expires every due timer once
+        now += 100 * TICK;
+        wheel.tick(now);
+
+        assertEquals(2, expired.size());
+        assertTrue(wheel.isEmpty());
+    }
+}
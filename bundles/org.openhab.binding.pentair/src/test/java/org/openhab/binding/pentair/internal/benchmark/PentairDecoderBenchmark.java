@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal.benchmark;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.binding.pentair.internal.PentairCaptureReader;
+import org.openhab.binding.pentair.internal.PentairFrameDecoder;
+import org.openhab.binding.pentair.internal.PentairPacket;
+import org.openhab.binding.pentair.internal.PentairPacketIntellichlor;
+import org.openhab.binding.pentair.internal.PentairTestFrames;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of {@link PentairFrameDecoder}, the framing done by the bridge's parser thread, over a byte stream fed in
+ * chunks as they would be returned by reads from the bridge.
+ *
+ * The stream is either synthetic, built by {@link PentairTestFrames#stream} with the given share of noise and frames
+ * with checksum errors, or recorded, read from a capture file written by a bridge with the capturefile parameter set
+ * and given by the system property pentair.capture. With a recorded stream, the chunks are those of the capture:
+ * {@link #main} then runs a single trial with chunk 0, which stands for the capture, instead of the synthetic
+ * parameters.
+ *
+ * The score is passes over the whole stream per second; the bytes, frames and errors counters give bytes/s, frames/s
+ * and checksum errors/s. Run with -prof gc for allocation; gc.alloc.rate.norm is bytes allocated per pass, divide by
+ * frames per pass (logged at setup) for allocation per frame.
+ *
+ * Run from the bundle directory with:
+ *
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath org.openhab.binding.pentair.internal.benchmark.PentairDecoderBenchmark"
+ * </pre>
+ *
+ * and for a capture, with -Dpentair.capture=&lt;file&gt; in front of -cp in exec.args.
+ *
+ * @author Jeff James - initial contribution
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PentairDecoderBenchmark {
+    /** system property naming a capture file to use instead of a synthetic stream */
+    public static final String CAPTURE_PROPERTY = "pentair.capture";
+
+    private static final int STREAM_SIZE = 64 * 1024;
+
+    /** bytes per read, 0 for the chunks of the capture file */
+    @Param({ "1", "32", "1024" })
+    public int chunk;
+
+    @Param({ "0.0", "0.2" })
+    public double noise;
+
+    @Param({ "0.0", "0.05" })
+    public double errors;
+
+    /**
+     * Counters reported per second alongside the score
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long bytes;
+        public long frames;
+        public long checksumerrors;
+
+        @Setup(Level.Iteration)
+        public void clear() {
+            bytes = 0;
+            frames = 0;
+            checksumerrors = 0;
+        }
+    }
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private PentairFrameDecoder decoder;
+    private Counters counters;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (chunk == 0) {
+            String capture = System.getProperty(CAPTURE_PROPERTY);
+            if (capture == null) {
+                throw new IllegalStateException("chunk 0 needs a capture file in " + CAPTURE_PROPERTY);
+            }
+
+            try (PentairCaptureReader reader = new PentairCaptureReader(Paths.get(capture))) {
+                ByteBuffer buf = ByteBuffer.allocate(0x10000);
+
+                while (reader.read(buf) >= 0) {
+                    buf.flip();
+                    chunks.add(ByteBuffer.wrap(Arrays.copyOf(buf.array(), buf.limit())));
+                    buf.clear();
+                }
+            }
+        } else {
+            byte[] stream = PentairTestFrames.stream(STREAM_SIZE, noise, errors, 1);
+
+            for (int i = 0; i < stream.length; i += chunk) {
+                chunks.add(ByteBuffer.wrap(stream, i, Math.min(chunk, stream.length - i)).slice());
+            }
+        }
+
+        decoder = new PentairFrameDecoder(new PentairFrameDecoder.Listener() {
+            @Override
+            public void onPentairPacket(PentairPacket p) {
+                counters.frames++;
+                decoder.release(p);
+            }
+
+            @Override
+            public void onIntellichlorPacket(PentairPacketIntellichlor p) {
+                counters.frames++;
+                decoder.release(p);
+            }
+
+            @Override
+            public void onChecksumError() {
+                counters.checksumerrors++;
+            }
+        });
+
+        Counters c = new Counters();
+        counters = c;
+        pass(c);
+        System.out.printf("%n%d chunks, %d bytes, %d frames, %d checksum errors per pass%n", chunks.size(), c.bytes,
+                c.frames, c.checksumerrors);
+    }
+
+    @Benchmark
+    public void decode(Counters c) {
+        pass(c);
+    }
+
+    private void pass(Counters c) {
+        counters = c;
+        decoder.reset();
+
+        for (ByteBuffer bb : chunks) {
+            bb.rewind();
+            c.bytes += bb.remaining();
+            decoder.decode(bb);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        ChainedOptionsBuilder options = new OptionsBuilder().include(PentairDecoderBenchmark.class.getSimpleName());
+        String capture = System.getProperty(CAPTURE_PROPERTY);
+
+        if (capture != null) {
+            // noise and errors do not apply to a recorded stream, a single trial over the capture
+            options.param("chunk", "0").param("noise", "0.0").param("errors", "0.0")
+                    .jvmArgsAppend("-D" + CAPTURE_PROPERTY + "=" + capture);
+        }
+
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openhab.binding.pentair.internal.PentairPacket;
+import org.openhab.binding.pentair.internal.PentairPacketIntellichlor;
+import org.openhab.binding.pentair.internal.PentairPacketPumpStatus;
+import org.openhab.binding.pentair.internal.PentairPacketStatus;
+import org.openhab.binding.pentair.internal.PentairTestFrames;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Cost of decoding a single packet into its specialized packet class, both by refilling a reused packet as the
+ * handlers do and by constructing a new one, and of formatting a packet with {@link PentairPacket#bytesToHex}. Run
+ * with -prof gc to see the allocation of each.
+ *
+ * @author Jeff James - initial contribution
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PentairPacketBenchmark {
+    private PentairPacket status;
+    private PentairPacket pumpstatus;
+    private byte[] saltoutput;
+    private byte[] salinity;
+
+    private final PentairPacketStatus ps = new PentairPacketStatus();
+    private final PentairPacketPumpStatus pps = new PentairPacketPumpStatus();
+    private final PentairPacketIntellichlor pic = new PentairPacketIntellichlor();
+
+    @Setup
+    public void setUp() {
+        status = packet(PentairTestFrames.CONTROLLER_STATUS);
+        pumpstatus = packet(PentairTestFrames.PUMP_STATUS);
+        saltoutput = PentairTestFrames.IC_SALTOUTPUT;
+        salinity = PentairTestFrames.IC_SALINITY;
+    }
+
+    /**
+     * Strips preamble and checksum of a frame, as the decoder does
+     */
+    private static PentairPacket packet(byte[] frame) {
+        return new PentairPacket(Arrays.copyOfRange(frame, 3, frame.length - 2));
+    }
+
+    @Benchmark
+    public int statusParse() {
+        ps.parsePacket(status);
+        return ps.pooltemp;
+    }
+
+    @Benchmark
+    public PentairPacketStatus statusNew() {
+        return new PentairPacketStatus(status);
+    }
+
+    @Benchmark
+    public int pumpStatusParse() {
+        pps.parsePacket(pumpstatus);
+        return pps.rpm;
+    }
+
+    @Benchmark
+    public PentairPacketPumpStatus pumpStatusNew() {
+        return new PentairPacketPumpStatus(pumpstatus);
+    }
+
+    @Benchmark
+    public void intellichlorParse(Blackhole bh) {
+        pic.parse(saltoutput, saltoutput.length - 5);
+        bh.consume(pic.saltoutput);
+        pic.parse(salinity, salinity.length - 5);
+        bh.consume(pic.salinity);
+    }
+
+    @Benchmark
+    public String bytesToHex() {
+        return PentairPacket.bytesToHex(status.buf, status.getPacketLength());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PentairPacketBenchmark.class.getSimpleName()).build()).run();
+    }
+}
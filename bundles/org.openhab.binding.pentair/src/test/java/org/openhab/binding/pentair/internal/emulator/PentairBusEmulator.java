@@ -0,0 +1,399 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal.emulator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openhab.binding.pentair.internal.PentairBusMonitor;
+import org.openhab.binding.pentair.internal.PentairFrameDecoder;
+import org.openhab.binding.pentair.internal.PentairPacket;
+import org.openhab.binding.pentair.internal.PentairPacketIntellichlor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Emulates a Pentair RS-485 bus behind a TCP server, the way an RS-485 to ethernet adapter exposes it, so the
+ * ip_bridge can be run end to end without hardware. On the bus are an EasyTouch controller, any number of IntelliFlo
+ * pumps and optionally an IntelliChlor.
+ *
+ * Like the real bus, every byte is seen by every client: frames sent by the emulated devices are written to all
+ * clients and bytes written by a client are forwarded to the other clients. Bytes from clients are also decoded and
+ * handed to the emulated devices, which answer queries and commands addressed to them.
+ *
+ * Errors can be injected to test recovery: noise bytes between frames, frames with a bad checksum and dropped
+ * replies. Replies can be delayed, and with pacing each frame occupies the emulator for its transfer time at 9600
+ * baud, so timing is close to that of the real bus.
+ *
+ * Run from the command line with e.g.
+ *
+ * java ... org.openhab.binding.pentair.internal.emulator.PentairBusEmulator --port=10000 --pumps=2 --corrupt=0.01
+ *
+ * @author Jeff James - initial contribution
+ */
+public class PentairBusEmulator {
+    private final Logger logger = LoggerFactory.getLogger(PentairBusEmulator.class);
+
+    /**
+     * Emulator configuration, parsed from --name=value arguments
+     */
+    public static class Options {
+        /** TCP port to listen on, 0 for any free port */
+        public int port = 10000;
+        /** address of the controller, 0 for no controller */
+        public int controller = 0x10;
+        /** number of pumps, starting at address 0x60 */
+        public int pumps = 1;
+        /** whether there is an IntelliChlor */
+        public boolean chlorinator = true;
+        /** interval of the controller status broadcast in ms */
+        public long status = 2000;
+        /** interval at which pumps send their status on their own in ms, 0 to only answer requests */
+        public long pumpstatus = 0;
+        /** interval of the IntelliChlor reports in ms */
+        public long chlorstatus = 5000;
+        /** probability of noise bytes in front of a frame */
+        public double noise = 0;
+        /** probability of a frame being sent with a bad checksum */
+        public double corrupt = 0;
+        /** probability of a reply being dropped */
+        public double drop = 0;
+        /** delay of replies in ms */
+        public long delay = 0;
+        /** whether frames are sent at the speed of the bus */
+        public boolean paced = false;
+        /** interval of statistics output in s when run from the command line, 0 for none */
+        public long stats = 10;
+        /** seed for injected errors and drift, for repeatable runs */
+        public long seed = 1;
+
+        public static Options parse(String[] args) {
+            Options o = new Options();
+
+            for (String arg : args) {
+                int eq = arg.indexOf('=');
+                if (!arg.startsWith("--") || eq < 0) {
+                    throw new IllegalArgumentException("Expected --name=value: " + arg);
+                }
+
+                String name = arg.substring(2, eq);
+                String value = arg.substring(eq + 1);
+
+                try {
+                    Field field = Options.class.getField(name);
+
+                    if (field.getType() == int.class) {
+                        field.setInt(o, Integer.decode(value));
+                    } else if (field.getType() == long.class) {
+                        field.setLong(o, Long.decode(value));
+                    } else if (field.getType() == double.class) {
+                        field.setDouble(o, Double.parseDouble(value));
+                    } else {
+                        field.setBoolean(o, Boolean.parseBoolean(value));
+                    }
+                } catch (NoSuchFieldException | IllegalAccessException e) {
+                    throw new IllegalArgumentException("Unknown option: " + name);
+                }
+            }
+
+            return o;
+        }
+    }
+
+    private final Options options;
+    private final Random random;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final List<PentairEmulatedDevice> devices = new ArrayList<>();
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+
+    private ServerSocket server;
+    private Thread acceptor;
+
+    private final AtomicLong txframes = new AtomicLong();
+    private final AtomicLong txbytes = new AtomicLong();
+    private final AtomicLong rxframes = new AtomicLong();
+    private final AtomicLong rxerrors = new AtomicLong();
+    private final AtomicLong replies = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public PentairBusEmulator(Options options) {
+        this.options = options;
+        this.random = new Random(options.seed);
+
+        if (options.controller != 0) {
+            devices.add(new PentairEmulatedController(this, options.controller, options.status));
+        }
+        for (int i = 0; i < options.pumps && i < 16; i++) {
+            devices.add(new PentairEmulatedPump(this, 0x60 + i, options.pumpstatus));
+        }
+        if (options.chlorinator) {
+            devices.add(new PentairEmulatedChlorinator(this, options.chlorstatus));
+        }
+    }
+
+    /**
+     * Starts listening and the periodic broadcasts of the devices
+     *
+     * @return port listened on
+     * @throws IOException
+     */
+    public int start() throws IOException {
+        server = new ServerSocket(options.port, 4, InetAddress.getLoopbackAddress());
+
+        acceptor = new Thread(this::accept, "pentair-emulator-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        for (PentairEmulatedDevice device : devices) {
+            scheduler.execute(device::start);
+        }
+
+        return server.getLocalPort();
+    }
+
+    /**
+     * Stops the emulator and disconnects all clients
+     */
+    public void stop() {
+        scheduler.shutdownNow();
+
+        try {
+            server.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+
+        for (Client client : clients) {
+            client.close();
+        }
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Client client = new Client(server.accept());
+
+                clients.add(client);
+                client.start();
+                logger.info("Client connected: {}", client.socket.getRemoteSocketAddress());
+            } catch (IOException e) {
+                if (!server.isClosed()) {
+                    logger.warn("Accept failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    Random random() {
+        return random;
+    }
+
+    /**
+     * Runs a task of a device periodically on the scheduler thread
+     *
+     * @param task task to run
+     * @param interval interval in ms
+     */
+    void repeat(Runnable task, long interval) {
+        scheduler.scheduleAtFixedRate(task, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends a reply to a query or command, subject to the configured delay and drop rate
+     *
+     * @param frame frame to send
+     */
+    void reply(byte[] frame) {
+        if (random.nextDouble() < options.drop) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        replies.incrementAndGet();
+
+        if (options.delay > 0) {
+            scheduler.schedule(() -> send(frame), options.delay, TimeUnit.MILLISECONDS);
+        } else {
+            send(frame);
+        }
+    }
+
+    /**
+     * Writes a frame to all clients, subject to the configured noise and corruption rate. Called on the scheduler
+     * thread only.
+     *
+     * @param frame frame to send
+     */
+    void send(byte[] frame) {
+        byte[] bytes = frame;
+
+        if (random.nextDouble() < options.noise) {
+            int n = 1 + random.nextInt(8);
+            bytes = new byte[n + frame.length];
+            for (int i = 0; i < n; i++) {
+                bytes[i] = (byte) random.nextInt(0x10);
+            }
+            System.arraycopy(frame, 0, bytes, n, frame.length);
+        }
+
+        if (random.nextDouble() < options.corrupt) {
+            if (bytes == frame) {
+                bytes = frame.clone();
+            }
+            bytes[bytes.length - 3] ^= 0x01;
+        }
+
+        for (Client client : clients) {
+            client.write(bytes, 0, bytes.length);
+        }
+
+        txframes.incrementAndGet();
+        txbytes.addAndGet(bytes.length);
+
+        if (options.paced) {
+            LockSupport.parkNanos(bytes.length * PentairBusMonitor.BYTE_TIME);
+        }
+    }
+
+    /**
+     * Prints the statistics to the console, only used when run from the command line
+     */
+    private void printStats() {
+        System.out.printf(
+                "clients %d, tx %d frames %d bytes, rx %d frames %d checksum errors, replies %d, dropped %d%n",
+                clients.size(), txframes.get(), txbytes.get(), rxframes.get(), rxerrors.get(), replies.get(),
+                dropped.get());
+    }
+
+    /**
+     * Connection of a client. Bytes read are forwarded to the other clients and decoded for the emulated devices.
+     */
+    private class Client implements PentairFrameDecoder.Listener {
+        private final Socket socket;
+        private final OutputStream out;
+        private final PentairFrameDecoder decoder = new PentairFrameDecoder(this);
+
+        Client(Socket socket) throws IOException {
+            this.socket = socket;
+            this.socket.setTcpNoDelay(true);
+            this.out = socket.getOutputStream();
+        }
+
+        void start() {
+            Thread reader = new Thread(this::read, "pentair-emulator-client");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private void read() {
+            byte[] buf = new byte[1024];
+
+            try (InputStream in = socket.getInputStream()) {
+                int n;
+
+                while ((n = in.read(buf)) >= 0) {
+                    for (Client client : clients) {
+                        if (client != this) {
+                            client.write(buf, 0, n);
+                        }
+                    }
+
+                    decoder.decode(buf, 0, n);
+                }
+            } catch (IOException e) {
+                // disconnected
+            }
+
+            close();
+            logger.info("Client disconnected: {}", socket.getRemoteSocketAddress());
+        }
+
+        synchronized void write(byte[] bytes, int offset, int len) {
+            try {
+                out.write(bytes, offset, len);
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            clients.remove(this);
+
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+
+        @Override
+        public void onPentairPacket(PentairPacket p) {
+            PentairPacket copy = new PentairPacket(p);
+
+            decoder.release(p);
+            rxframes.incrementAndGet();
+
+            scheduler.execute(() -> {
+                for (PentairEmulatedDevice device : devices) {
+                    device.onPentairPacket(copy);
+                }
+            });
+        }
+
+        @Override
+        public void onIntellichlorPacket(PentairPacketIntellichlor p) {
+            PentairPacketIntellichlor copy = new PentairPacketIntellichlor();
+
+            copy.parsePacket(p);
+            decoder.release(p);
+            rxframes.incrementAndGet();
+
+            scheduler.execute(() -> {
+                for (PentairEmulatedDevice device : devices) {
+                    device.onIntellichlorPacket(copy);
+                }
+            });
+        }
+
+        @Override
+        public void onChecksumError() {
+            rxerrors.incrementAndGet();
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Options options = Options.parse(args);
+        PentairBusEmulator emulator = new PentairBusEmulator(options);
+
+        int port = emulator.start();
+        System.out.printf("Pentair bus emulator listening on port %d%n", port);
+
+        if (options.stats > 0) {
+            emulator.scheduler.scheduleAtFixedRate(emulator::printStats, options.stats, options.stats,
+                    TimeUnit.SECONDS);
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(emulator::stop));
+        Thread.currentThread().join();
+    }
+}
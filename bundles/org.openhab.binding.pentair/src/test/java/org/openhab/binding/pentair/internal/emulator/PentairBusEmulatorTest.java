@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal.emulator;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.pentair.internal.PentairFrameDecoder;
+import org.openhab.binding.pentair.internal.PentairPacket;
+import org.openhab.binding.pentair.internal.PentairPacketIntellichlor;
+import org.openhab.binding.pentair.internal.PentairPacketPumpStatus;
+import org.openhab.binding.pentair.internal.PentairTestFrames;
+
+/**
+ * Tests cases for {@link PentairBusEmulator}.
+ *
+ * @author Jeff James - initial contribution
+ */
+public class PentairBusEmulatorTest {
+    private static final int SOURCE = 0x22;
+
+    private PentairBusEmulator emulator;
+    private Socket socket;
+    private final Queue<PentairPacket> packets = new ArrayDeque<>();
+    private PentairFrameDecoder decoder;
+
+    @Before
+    public void setUp() throws IOException {
+        PentairBusEmulator.Options options = PentairBusEmulator.Options
+                .parse(new String[] { "--port=0", "--status=60000", "--chlorinator=false", "--stats=0" });
+
+        emulator = new PentairBusEmulator(options);
+        socket = new Socket(InetAddress.getLoopbackAddress(), emulator.start());
+        socket.setSoTimeout(2000);
+
+        decoder = new PentairFrameDecoder(new PentairFrameDecoder.Listener() {
+            @Override
+            public void onPentairPacket(PentairPacket p) {
+                packets.add(new PentairPacket(p));
+                decoder.release(p);
+            }
+
+            @Override
+            public void onIntellichlorPacket(PentairPacketIntellichlor p) {
+                decoder.release(p);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        socket.close();
+        emulator.stop();
+    }
+
+    private void write(int dest, int action, int... data) throws IOException {
+        socket.getOutputStream().write(PentairTestFrames.pentair(0x01, dest, SOURCE, action, data));
+    }
+
+    private PentairPacket read(int action) throws IOException {
+        InputStream in = socket.getInputStream();
+        byte[] buf = new byte[256];
+
+        while (true) {
+            while (!packets.isEmpty()) {
+                PentairPacket p = packets.poll();
+                if ((p.getAction() & 0xFF) == action) {
+                    return p;
+                }
+            }
+
+            int n = in.read(buf);
+            assertTrue(n > 0);
+            decoder.decode(buf, 0, n);
+        }
+    }
+
+    @Test
+    public void controllerQueryTest() throws IOException {
+        write(0x10, 0xC8, 0);
+
+        PentairPacket p = read(0x08);
+        assertEquals(SOURCE, p.getDest() & 0xFF);
+        assertEquals(0x10, p.getSource() & 0xFF);
+        assertEquals(13, p.getLength());
+
+        write(0x10, 0x86, 2, 1); // aux1 on
+
+        assertEquals(0x86, read(0x01).getByte(PentairPacket.STARTOFDATA) & 0xFF);
+        assertEquals(0x22, read(0x02).getByte(PentairPacket.STARTOFDATA + 2) & 0xFF); // pool and aux1
+    }
+
+    @Test
+    public void pumpSpeedTest() throws IOException {
+        write(0x60, 0x01, 0x02, 0xC4, 0x07, 0xD0); // 2000 rpm
+        read(0x01);
+
+        write(0x60, 0x07);
+
+        PentairPacketPumpStatus pps = new PentairPacketPumpStatus(read(0x07));
+        assertTrue(pps.run);
+        assertEquals(2000, pps.rpm);
+    }
+}
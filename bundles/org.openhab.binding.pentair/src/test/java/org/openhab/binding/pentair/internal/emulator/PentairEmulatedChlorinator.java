@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal.emulator;
+
+import org.openhab.binding.pentair.internal.PentairPacket;
+import org.openhab.binding.pentair.internal.PentairTestFrames;
+
+/**
+ * Emulates an IntelliChlor and the controller's side of the conversation with it. Periodically sends the salt output
+ * set by the controller (10 02 50 11 ...) and the salinity report of the chlorinator (10 02 00 12 ...). A salt output
+ * written by a client is acknowledged with a salinity report.
+ *
+ * @author Jeff James - initial contribution
+ */
+class PentairEmulatedChlorinator extends PentairEmulatedDevice {
+    private static final int CHLORINATOR = 0x50;
+    private static final int CMD = 3;
+    private static final int DATA = 4;
+
+    private final long interval;
+
+    private int saltoutput = 50;
+    /** salinity in units of 50 ppm */
+    private int salinity = 64;
+
+    /**
+     * @param bus bus the chlorinator is on
+     * @param interval interval between reports in ms
+     */
+    PentairEmulatedChlorinator(PentairBusEmulator bus, long interval) {
+        super(bus, CHLORINATOR);
+        this.interval = interval;
+    }
+
+    @Override
+    void start() {
+        bus.repeat(() -> {
+            bus.send(PentairTestFrames.intellichlor(CHLORINATOR, 0x11, saltoutput));
+            bus.send(salinity());
+        }, interval);
+    }
+
+    private byte[] salinity() {
+        return PentairTestFrames.intellichlor(0x00, 0x12, salinity, 0x00);
+    }
+
+    @Override
+    void onIntellichlorPacket(PentairPacket p) {
+        if ((p.getByte(2) & 0xFF) != CHLORINATOR) {
+            return;
+        }
+
+        if ((p.getByte(CMD) & 0xFF) == 0x11) {
+            saltoutput = p.getByte(DATA) & 0xFF;
+        }
+
+        bus.reply(salinity());
+    }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal.emulator;
+
+import static org.openhab.binding.pentair.internal.PentairPacket.STARTOFDATA;
+
+import java.time.LocalDateTime;
+
+import org.openhab.binding.pentair.internal.PentairPacket;
+import org.openhab.binding.pentair.internal.PentairTestFrames;
+
+/**
+ * Emulates an EasyTouch controller. Broadcasts the action 2 status, answers the clock (0xC5), heat (0xC8), circuit
+ * name (0xCB), schedule (0xD1) and version (0xD9) queries, and acks circuit (0x86), heat (0x88) and clock (0x85)
+ * writes. Temperatures drift slowly so the status changes over time.
+ *
+ * @author Jeff James - initial contribution
+ */
+class PentairEmulatedController extends PentairEmulatedDevice {
+    private static final int VERSION = 0x01;
+    private static final int BROADCAST = 0x0F;
+    private static final int NUMSCHEDULES = 9;
+
+    private final long interval;
+
+    /** circuits 1-9 that are on, bit n-1 for circuit n */
+    private int circuits = 0x20; // pool
+    private int pooltemp = 78;
+    private int spatemp = 78;
+    private int airtemp = 80;
+    private int solartemp = 78;
+    private int poolsetpoint = 82;
+    private int spasetpoint = 100;
+    /** pool heat mode in bits 0-1, spa heat mode in bits 2-3 */
+    private int heatmode = 0x01;
+
+    /**
+     * @param bus bus the controller is on
+     * @param address address of the controller, normally 0x10
+     * @param interval interval of the status broadcast in ms
+     */
+    PentairEmulatedController(PentairBusEmulator bus, int address, long interval) {
+        super(bus, address);
+        this.interval = interval;
+    }
+
+    @Override
+    void start() {
+        bus.repeat(this::broadcastStatus, interval);
+    }
+
+    private void broadcastStatus() {
+        if (bus.random().nextInt(30) == 0) {
+            pooltemp += (pooltemp < poolsetpoint && isOn(6)) ? 1 : bus.random().nextInt(3) - 1;
+            airtemp += bus.random().nextInt(3) - 1;
+        }
+
+        bus.send(status());
+    }
+
+    private boolean isOn(int circuit) {
+        return (circuits & (1 << (circuit - 1))) != 0;
+    }
+
+    private byte[] status() {
+        LocalDateTime now = LocalDateTime.now();
+        int heatactive = (isOn(6) && (heatmode & 0x03) != 0 && pooltemp < poolsetpoint) ? 0x0C : 0x00;
+
+        return frame(BROADCAST, 0x02, now.getHour(), now.getMinute(), circuits & 0xFF, (circuits >> 8) & 0xFF, 0, 0, 0,
+                0, 0, 0x00, heatactive, 0, 0, 0, pooltemp, spatemp, 0, 0, airtemp, solartemp, 0, 0, 0, 0, 0, 0, 0, 0,
+                0);
+    }
+
+    private byte[] frame(int dest, int action, int... data) {
+        return PentairTestFrames.pentair(VERSION, dest, address, action, data);
+    }
+
+    @Override
+    void onPentairPacket(PentairPacket p) {
+        if (unsigned(p, PentairPacket.DEST) != address) {
+            return;
+        }
+
+        int source = p.getSource() & 0xFF;
+        int action = p.getAction() & 0xFF;
+
+        switch (action) {
+            case 0xC5: { // clock
+                LocalDateTime now = LocalDateTime.now();
+                bus.reply(frame(source, 0x05, now.getHour(), now.getMinute(), now.getDayOfWeek().getValue() % 7 + 1,
+                        now.getDayOfMonth(), now.getMonthValue(), now.getYear() - 2000, 0, 0));
+                break;
+            }
+            case 0xC8: // heat status
+                bus.reply(frame(source, 0x08, pooltemp, spatemp, airtemp, poolsetpoint, spasetpoint, heatmode, 0, 0,
+                        solartemp, 0, 0, 0, 0));
+                break;
+            case 0xCB: { // circuit name and function
+                int circuit = unsigned(p, STARTOFDATA);
+                bus.reply(frame(source, 0x0B, circuit, (circuit == 6) ? 0x02 : 0x00, circuit, 0, 0));
+                break;
+            }
+            case 0xD1: { // schedule
+                int num = unsigned(p, STARTOFDATA);
+                if (num < 1 || num > NUMSCHEDULES) {
+                    break;
+                }
+                // schedule 1 runs the pool 8:00-17:00 every day, the others are unused
+                bus.reply((num == 1) ? frame(source, 0x11, num, 6, 8, 0, 17, 0, 0x7F)
+                        : frame(source, 0x11, num, 0, 0, 0, 0, 0, 0));
+                break;
+            }
+            case 0xD9: // software version, the binding expects it as action 252
+                bus.reply(frame(source, 0xFC, 0, 2, 20, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0));
+                break;
+            case 0x86: { // circuit on/off
+                int circuit = unsigned(p, STARTOFDATA);
+                if (circuit >= 1 && circuit <= 9) {
+                    if (p.getByte(STARTOFDATA + 1) != 0) {
+                        circuits |= 1 << (circuit - 1);
+                    } else {
+                        circuits &= ~(1 << (circuit - 1));
+                    }
+                }
+                bus.reply(frame(source, 0x01, action));
+                bus.reply(status()); // controller broadcasts the change right away
+                break;
+            }
+            case 0x88: // heat set point and mode
+                poolsetpoint = unsigned(p, STARTOFDATA);
+                spasetpoint = unsigned(p, STARTOFDATA + 1);
+                heatmode = unsigned(p, STARTOFDATA + 2);
+                bus.reply(frame(source, 0x01, action));
+                break;
+            case 0x85: // set clock, the emulator follows the system clock
+                bus.reply(frame(source, 0x01, action));
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal.emulator;
+
+import org.openhab.binding.pentair.internal.PentairPacket;
+
+/**
+ * Base class for a device emulated on the bus of a {@link PentairBusEmulator}. All methods are called on the
+ * emulator's single scheduler thread, so devices need no synchronization.
+ *
+ * @author Jeff James - initial contribution
+ */
+abstract class PentairEmulatedDevice {
+    protected final PentairBusEmulator bus;
+    protected final int address;
+
+    PentairEmulatedDevice(PentairBusEmulator bus, int address) {
+        this.bus = bus;
+        this.address = address;
+    }
+
+    /**
+     * Starts periodic broadcasts of the device, if any
+     */
+    abstract void start();
+
+    /**
+     * Called for every Pentair packet written to the bus by a client
+     *
+     * @param p packet, only valid for the duration of the call
+     */
+    void onPentairPacket(PentairPacket p) {
+    }
+
+    /**
+     * Called for every Intellichlor packet written to the bus by a client
+     *
+     * @param p packet, only valid for the duration of the call
+     */
+    void onIntellichlorPacket(PentairPacket p) {
+    }
+
+    static int unsigned(PentairPacket p, int n) {
+        return p.getByte(n) & 0xFF;
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal.emulator;
+
+import static org.openhab.binding.pentair.internal.PentairPacket.STARTOFDATA;
+
+import java.time.LocalDateTime;
+
+import org.openhab.binding.pentair.internal.PentairPacket;
+import org.openhab.binding.pentair.internal.PentairTestFrames;
+
+/**
+ * Emulates an IntelliFlo pump. Answers status requests (action 7), acks remote control (4), pump mode (5), run (6)
+ * and speed/program (1) commands, and optionally sends its status to the controller on its own, as it does when
+ * polled by the controller.
+ *
+ * @author Jeff James - initial contribution
+ */
+class PentairEmulatedPump extends PentairEmulatedDevice {
+    private static final int CONTROLLER = 0x10;
+
+    private final long interval;
+
+    private boolean run = true;
+    private boolean remote;
+    private int mode;
+    private int rpm = 2500;
+
+    /**
+     * @param bus bus the pump is on
+     * @param address address of the pump, 0x60-0x6F
+     * @param interval interval at which status is sent to the controller in ms, 0 to only answer requests
+     */
+    PentairEmulatedPump(PentairBusEmulator bus, int address, long interval) {
+        super(bus, address);
+        this.interval = interval;
+    }
+
+    @Override
+    void start() {
+        if (interval > 0) {
+            bus.repeat(() -> bus.send(status(CONTROLLER)), interval);
+        }
+    }
+
+    private byte[] status(int dest) {
+        LocalDateTime now = LocalDateTime.now();
+        int r = run ? rpm : 0;
+        int power = r * r / 4000;
+
+        return frame(dest, 0x07, run ? 0x0A : 0x04, mode, run ? 0x02 : 0x00, power >> 8, power & 0xFF, r >> 8, r & 0xFF,
+                r / 100, 0, 0, 0, 0, 0, now.getHour(), now.getMinute());
+    }
+
+    private byte[] frame(int dest, int action, int... data) {
+        return PentairTestFrames.pentair(0x00, dest, address, action, data);
+    }
+
+    @Override
+    void onPentairPacket(PentairPacket p) {
+        if (unsigned(p, PentairPacket.DEST) != address) {
+            return;
+        }
+
+        int source = p.getSource() & 0xFF;
+
+        switch (p.getAction() & 0xFF) {
+            case 0x07: // status request
+                bus.reply(status(source));
+                break;
+            case 0x04: // remote control on/off
+                remote = unsigned(p, STARTOFDATA) == 0xFF;
+                bus.reply(frame(source, 0x04, remote ? 0xFF : 0x00));
+                break;
+            case 0x05: // pump mode
+                mode = unsigned(p, STARTOFDATA);
+                bus.reply(frame(source, 0x05, mode));
+                break;
+            case 0x06: // run on/off
+                run = unsigned(p, STARTOFDATA) == 0x0A;
+                bus.reply(frame(source, 0x06, run ? 0x0A : 0x04));
+                break;
+            case 0x01: { // 02 C4 rpmH rpmL sets speed, 03 21 00 program<<3 runs a program
+                int hi = unsigned(p, STARTOFDATA + 2);
+                int lo = unsigned(p, STARTOFDATA + 3);
+                if (unsigned(p, STARTOFDATA) == 0x02 && unsigned(p, STARTOFDATA + 1) == 0xC4) {
+                    rpm = (hi << 8) | lo;
+                }
+                bus.reply(frame(source, 0x01, hi, lo));
+                break;
+            }
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ * Copyright (c) 2010-2018 by the respective copyright holders.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.openhab.binding.pentair.internal.handler;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.openhab.binding.pentair.internal.PentairBindingConstants.*;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.smarthome.config.core.Configuration;
+import org.eclipse.smarthome.core.library.types.DecimalType;
+import org.eclipse.smarthome.core.library.types.OnOffType;
+import org.eclipse.smarthome.core.thing.Bridge;
+import org.eclipse.smarthome.core.thing.ChannelUID;
+import org.eclipse.smarthome.core.thing.Thing;
+import org.eclipse.smarthome.core.thing.ThingStatus;
+import org.eclipse.smarthome.core.thing.binding.ThingHandlerCallback;
+import org.eclipse.smarthome.core.thing.binding.builder.BridgeBuilder;
+import org.eclipse.smarthome.core.thing.binding.builder.ThingBuilder;
+import org.eclipse.smarthome.core.types.State;
+import org.eclipse.smarthome.test.java.JavaTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openhab.binding.pentair.internal.PentairTestFrames;
+import org.openhab.binding.pentair.internal.discovery.PentairDiscoveryService;
+
+/**
+ * Tests cases for {@link PentairBaseBridgeHandler}, routing frames from the bus to the child Things.
+ *
+ * @author Jeff James - initial contribution
+ */
+public class PentairBaseBridgeHandlerTest extends JavaTest {
+    private static final int BRIDGE_ID = 0x22;
+    private static final int CONTROLLER_ID = 0x10;
+    private static final int PUMP_ID = 0x60;
+
+    /**
+     * Bridge without transport, bytes are pushed into the decoder by the test
+     */
+    private static class TestBridgeHandler extends PentairBaseBridgeHandler {
+        TestBridgeHandler(Bridge bridge) {
+            super(bridge);
+        }
+
+        @Override
+        protected int connect() {
+            id = BRIDGE_ID;
+            updateStatus(ThingStatus.ONLINE);
+            return 0;
+        }
+
+        @Override
+        protected void disconnect() {
+            updateStatus(ThingStatus.OFFLINE);
+        }
+
+        @Override
+        protected boolean isWritable() {
+            return false;
+        }
+
+        void receive(byte[] bytes) {
+            readbuffer.clear();
+            readbuffer.put(bytes);
+            readbuffer.flip();
+            processReceived(bytes.length);
+        }
+    }
+
+    private final Map<String, State> states = new ConcurrentHashMap<>();
+
+    private Bridge bridge;
+    private TestBridgeHandler bridgehandler;
+    private ThingHandlerCallback callback;
+
+    @Before
+    public void setUp() {
+        callback = mock(ThingHandlerCallback.class);
+        doAnswer(answer -> {
+            ((Thing) answer.getArgument(0)).setStatusInfo(answer.getArgument(1));
+            return null;
+        }).when(callback).statusUpdated(any(), any());
+        doAnswer(answer -> {
+            states.put(((ChannelUID) answer.getArgument(0)).getId(), answer.getArgument(1));
+            return null;
+        }).when(callback).stateUpdated(any(), any());
+
+        bridge = BridgeBuilder.create(IP_BRIDGE_THING_TYPE, "1").withLabel("Pentair Bridge")
+                .withConfiguration(new Configuration()).build();
+        bridgehandler = new TestBridgeHandler(bridge);
+        bridge.setHandler(bridgehandler);
+        bridgehandler.setCallback(callback);
+        bridgehandler.initialize();
+
+        waitForAssert(() -> assertEquals(ThingStatus.ONLINE, bridge.getStatus()));
+    }
+
+    @After
+    public void tearDown() {
+        bridgehandler.dispose();
+    }
+
+    private PentairIntelliFloHandler createPump(boolean listenonly) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("id", new BigDecimal(PUMP_ID));
+        properties.put(CONFIG_LISTENONLY, listenonly);
+
+        Thing thing = ThingBuilder.create(INTELLIFLO_THING_TYPE, bridge.getUID(), "pump1").withLabel("Pump")
+                .withBridge(bridge.getUID()).withConfiguration(new Configuration(properties)).build();
+        PentairIntelliFloHandler pump = new PentairIntelliFloHandler(thing) {
+            @Override
+            protected Bridge getBridge() {
+                return bridge;
+            }
+        };
+
+        thing.setHandler(pump);
+        pump.setCallback(callback);
+        pump.initialize();
+
+        return pump;
+    }
+
+    @Test
+    public void routeToInitializingThingTest() {
+        PentairIntelliFloHandler pump = createPump(false);
+
+        // the bridge has not been told about the child, which only happens once it left INITIALIZING
+        assertSame(pump, bridgehandler.findHandler(PUMP_ID));
+
+        bridgehandler.receive(PentairTestFrames.PUMP_STATUS);
+
+        waitForAssert(() -> assertEquals(ThingStatus.ONLINE, pump.getThing().getStatus()));
+        waitForAssert(() -> assertEquals(new DecimalType(2500), states.get(INTELLIFLO_RPM)));
+        assertTrue(bridgehandler.getUnregistered().isEmpty());
+
+        pump.dispose();
+        assertNull(bridgehandler.findHandler(PUMP_ID));
+    }
+
+    @Test
+    public void listenOnlyTest() {
+        createPump(true);
+
+        // controller sets 1500 rpm and starts the pump, the pump acknowledges to the controller
+        bridgehandler.receive(PentairTestFrames.pentair(PUMP_ID, CONTROLLER_ID, 0x01, 0x02, 0xC4, 0x05, 0xDC));
+        bridgehandler.receive(PentairTestFrames.pentair(CONTROLLER_ID, PUMP_ID, 0x01, 0x05, 0xDC));
+        bridgehandler.receive(PentairTestFrames.pentair(PUMP_ID, CONTROLLER_ID, 0x05, 0x09));
+        bridgehandler.receive(PentairTestFrames.pentair(PUMP_ID, CONTROLLER_ID, 0x06, 0x0A));
+
+        waitForAssert(() -> assertEquals(new DecimalType(1500), states.get(INTELLIFLO_RPM)));
+        waitForAssert(() -> assertEquals(new DecimalType(9), states.get(INTELLIFLO_MODE)));
+        waitForAssert(() -> assertEquals(OnOffType.ON, states.get(INTELLIFLO_RUN)));
+
+        // status the controller requested, the reply is addressed to the controller rather than the bridge
+        bridgehandler.receive(PentairTestFrames.pentair(PUMP_ID, CONTROLLER_ID, 0x07));
+        bridgehandler.receive(PentairTestFrames.PUMP_STATUS);
+
+        waitForAssert(() -> assertEquals(new DecimalType(2500), states.get(INTELLIFLO_RPM)));
+        waitForAssert(() -> assertEquals(new DecimalType(1500), states.get(INTELLIFLO_POWER)));
+        waitForAssert(() -> assertEquals(new DecimalType(0), states.get(INTELLIFLO_MODE)));
+    }
+
+    @Test
+    public void discoverIntellichlorTest() {
+        List<Integer> discovered = new CopyOnWriteArrayList<>();
+        bridgehandler.setDiscoveryService(new PentairDiscoveryService(bridgehandler) {
+            @Override
+            public void deviceDiscovered(int address) {
+                discovered.add(address);
+            }
+        });
+
+        // a frame from Pentair address 0 is not the Intellichlor and must not hide it
+        bridgehandler.receive(PentairTestFrames.pentair(CONTROLLER_ID, 0x00, 0x01));
+        bridgehandler.receive(PentairTestFrames.IC_SALTOUTPUT);
+        bridgehandler.receive(PentairTestFrames.IC_SALINITY);
+
+        waitForAssert(() -> assertTrue(discovered.contains(PentairDiscoveryService.INTELLICHLOR_ADDRESS)));
+        assertFalse(discovered.contains(0));
+        assertEquals(1, discovered.size());
+    }
+}